@@ -0,0 +1,198 @@
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link BatchWriter} that resizes its buffer and write thread count within bounds, following the mutation throughput.
+ * <p>
+ * The time spent in {@link #addMutation(Mutation)} is time the caller waited for a full buffer to drain. It is measured over windows of at
+ * least a second. When the caller waits for a quarter of a window, the buffer is doubled and a write thread is added, up to the maximums.
+ * When the caller barely waits and a window fills less than half the buffer, the buffer is halved and a write thread is removed, down to
+ * the minimums, so that a trickle of mutations does not sit in a large buffer. The writer is resized by closing the current Accumulo writer,
+ * which flushes it, and creating a new one.
+ * <p>
+ * If closing the current writer or creating its replacement fails, the error is thrown and this writer fails like an Accumulo writer
+ * whose mutations were rejected: every later call throws the same error, and {@link #close()} throws it too.
+ * <p>
+ * Like other batch writers, this class is meant to be used by one thread at a time; its methods are synchronized so that resizing is safe
+ * if it is shared.
+ */
+public class AdaptiveBatchWriter implements BatchWriter {
+    private static final Logger logger = Logger.getLogger(AdaptiveBatchWriter.class);
+
+    static final long WINDOW_MILLIS = 1000L;
+    static final double GROW_BLOCKED_FRACTION = 0.25;
+    static final double SHRINK_BLOCKED_FRACTION = 0.01;
+
+    private final Connector connector;
+    private final String tableName;
+    private final long minMemory;
+    private final long maxMemory;
+    private final int minWriteThreads;
+    private final int maxWriteThreads;
+    private final long maxLatency;
+
+    private BatchWriter writer;
+    private Exception failure = null;
+    private long memory;
+    private int writeThreads;
+
+    private long windowStart = System.currentTimeMillis();
+    private long windowBytes = 0;
+    private long windowBlockedNanos = 0;
+
+    /**
+     * @param connector
+     *            the connection
+     * @param tableName
+     *            the table to write to
+     * @param minMemory
+     *            the initial and smallest buffer size in bytes
+     * @param maxMemory
+     *            the largest buffer size in bytes
+     * @param minWriteThreads
+     *            the initial and smallest number of write threads
+     * @param maxWriteThreads
+     *            the largest number of write threads
+     * @param maxLatency
+     *            the maximum time in milliseconds a mutation is buffered
+     */
+    public AdaptiveBatchWriter(Connector connector, String tableName, long minMemory, long maxMemory, int minWriteThreads,
+            int maxWriteThreads, long maxLatency) throws TableNotFoundException {
+        if (minMemory < 1 || maxMemory < minMemory) {
+            throw new IllegalArgumentException("Not a valid writer memory range: " + minMemory + " to " + maxMemory);
+        }
+        if (minWriteThreads < 1 || maxWriteThreads < minWriteThreads) {
+            throw new IllegalArgumentException("Not a valid write thread range: " + minWriteThreads + " to " + maxWriteThreads);
+        }
+        this.connector = connector;
+        this.tableName = tableName;
+        this.minMemory = minMemory;
+        this.maxMemory = maxMemory;
+        this.minWriteThreads = minWriteThreads;
+        this.maxWriteThreads = maxWriteThreads;
+        this.maxLatency = maxLatency;
+        this.memory = minMemory;
+        this.writeThreads = minWriteThreads;
+        this.writer = createWriter();
+    }
+
+    @SuppressWarnings("deprecation")
+    private BatchWriter createWriter() throws TableNotFoundException {
+        return connector.createBatchWriter(tableName, memory, maxLatency, writeThreads);
+    }
+
+    @Override
+    public synchronized void addMutation(Mutation m) throws MutationsRejectedException {
+        checkFailure();
+        long start = System.nanoTime();
+        writer.addMutation(m);
+        windowBlockedNanos += System.nanoTime() - start;
+        windowBytes += m.numBytes();
+        endWindow();
+    }
+
+    @Override
+    public synchronized void addMutations(Iterable<Mutation> iterable) throws MutationsRejectedException {
+        for (Mutation m : iterable) {
+            addMutation(m);
+        }
+    }
+
+    private void endWindow() throws MutationsRejectedException {
+        long now = System.currentTimeMillis();
+        long windowMillis = now - windowStart;
+        if (windowMillis < WINDOW_MILLIS) {
+            return;
+        }
+        adjust(windowBytes, windowMillis, windowBlockedNanos / 1000000L);
+        windowStart = now;
+        windowBytes = 0;
+        windowBlockedNanos = 0;
+    }
+
+    /**
+     * Resize the writer for the throughput of a window.
+     *
+     * @return true if the writer was resized
+     */
+    synchronized boolean adjust(long bytes, long windowMillis, long blockedMillis) throws MutationsRejectedException {
+        double blockedFraction = (double) blockedMillis / Math.max(1L, windowMillis);
+        long newMemory = memory;
+        int newWriteThreads = writeThreads;
+        if (blockedFraction >= GROW_BLOCKED_FRACTION) {
+            newMemory = Math.min(maxMemory, memory * 2);
+            newWriteThreads = Math.min(maxWriteThreads, writeThreads + 1);
+        } else if (blockedFraction <= SHRINK_BLOCKED_FRACTION && bytes < memory / 2) {
+            newMemory = Math.max(minMemory, memory / 2);
+            newWriteThreads = Math.max(minWriteThreads, writeThreads - 1);
+        }
+        if (newMemory == memory && newWriteThreads == writeThreads) {
+            return false;
+        }
+
+        logger.debug("Resizing writer for " + tableName + " from " + memory + " bytes and " + writeThreads + " threads to " + newMemory
+                + " bytes and " + newWriteThreads + " threads (" + bytes + " bytes in " + windowMillis + " ms, blocked " + blockedMillis
+                + " ms)");
+        checkFailure();
+        BatchWriter closing = writer;
+        writer = null;
+        try {
+            closing.close();
+        } catch (MutationsRejectedException e) {
+            failure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        }
+        memory = newMemory;
+        writeThreads = newWriteThreads;
+        try {
+            writer = createWriter();
+        } catch (TableNotFoundException e) {
+            IllegalStateException ise = new IllegalStateException("Table " + tableName + " was deleted while writing to it", e);
+            failure = ise;
+            throw ise;
+        }
+        return true;
+    }
+
+    private void checkFailure() throws MutationsRejectedException {
+        if (failure instanceof MutationsRejectedException) {
+            throw (MutationsRejectedException) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * @return the current buffer size in bytes
+     */
+    public synchronized long getMaxMemory() {
+        return memory;
+    }
+
+    /**
+     * @return the current number of write threads
+     */
+    public synchronized int getMaxWriteThreads() {
+        return writeThreads;
+    }
+
+    @Override
+    public synchronized void flush() throws MutationsRejectedException {
+        checkFailure();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws MutationsRejectedException {
+        checkFailure();
+        writer.close();
+    }
+}
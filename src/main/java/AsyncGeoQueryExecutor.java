@@ -0,0 +1,70 @@
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openrdf.model.URI;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Runs {@link GeoIndexer} queries asynchronously on a small, shared thread pool.
+ * <p>
+ * Each query returns an {@link AsyncStatementCursor} that reads its results one batch at a time, only when the caller asks for the next
+ * batch. A pool thread is used only while a batch is being read, so many more queries can be open than there are threads, and a query
+ * whose consumer falls behind does not read ahead.
+ */
+public class AsyncGeoQueryExecutor implements Closeable {
+    private final GeoIndexer indexer;
+    private final ListeningExecutorService executor;
+
+    /**
+     * @param indexer
+     *            the indexer to query
+     * @param conf
+     *            the configuration holding {@link ConfigUtils#GEO_ASYNC_QUERY_THREADS}
+     */
+    public AsyncGeoQueryExecutor(GeoIndexer indexer, Configuration conf) {
+        this(indexer, ConfigUtils.getGeoAsyncQueryThreads(conf));
+    }
+
+    /**
+     * @param indexer
+     *            the indexer to query
+     * @param numThreads
+     *            the number of threads that read batches
+     */
+    public AsyncGeoQueryExecutor(GeoIndexer indexer, int numThreads) {
+        this.indexer = indexer;
+        this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("geo-async-query-%d").build()));
+    }
+
+    /**
+     * Start a query. No results are read until the first batch is requested.
+     *
+     * @param function
+     *            one of the {@link GeoFunctions#SF_FUNCTIONS}
+     * @param query
+     *            the queried geometry
+     * @param contraints
+     *            the {@link StatementContraints}, or null
+     * @param batchSize
+     *            the maximum number of statements in a batch
+     * @return a cursor over the results
+     */
+    public AsyncStatementCursor query(URI function, Geometry query, StatementContraints contraints, int batchSize) {
+        return new AsyncStatementCursor(GeoFunctions.query(indexer, function, query, contraints), executor, batchSize);
+    }
+
+    /**
+     * Stop the thread pool. Batches that have already been requested are still read, but no new batches can be requested.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
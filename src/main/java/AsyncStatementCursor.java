@@ -0,0 +1,147 @@
+
+import info.aduna.iteration.CloseableIteration;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+import org.openrdf.model.Statement;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * A demand-driven, asynchronous cursor over the results of a query. Each call to {@link #nextBatch()} reads at most one batch of statements
+ * on a shared thread pool and completes the returned future with it. Nothing is read until a batch is requested, so a slow consumer holds
+ * back the scan instead of buffering results, and no thread is held between batches.
+ * <p>
+ * Only one batch may be requested at a time. An empty batch marks the end of the results, after which the underlying iteration has been
+ * closed.
+ */
+public class AsyncStatementCursor implements Closeable {
+    private static final Logger logger = Logger.getLogger(AsyncStatementCursor.class);
+
+    private final CloseableIteration<Statement, QueryEvaluationException> iteration;
+    private final ListeningExecutorService executor;
+    private final int batchSize;
+
+    // guarded by this
+    private boolean fetching = false;
+    private boolean exhausted = false;
+    private boolean iterationClosed = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param iteration
+     *            the results to read
+     * @param executor
+     *            the pool that reads the batches
+     * @param batchSize
+     *            the maximum number of statements in a batch
+     */
+    public AsyncStatementCursor(CloseableIteration<Statement, QueryEvaluationException> iteration, ListeningExecutorService executor,
+            int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.iteration = iteration;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Request the next batch of statements.
+     *
+     * @return a future of the next batch, which is empty at the end of the results
+     * @throws IllegalStateException
+     *             if the previous batch has not completed yet
+     */
+    public synchronized ListenableFuture<List<Statement>> nextBatch() {
+        if (fetching) {
+            throw new IllegalStateException("The previous batch has not completed");
+        }
+        if (closed) {
+            return Futures.immediateFailedFuture(new IllegalStateException("The cursor is closed"));
+        }
+        if (exhausted) {
+            return Futures.immediateFuture(Collections.<Statement> emptyList());
+        }
+        fetching = true;
+        try {
+            return executor.submit(new Callable<List<Statement>>() {
+                @Override
+                public List<Statement> call() throws QueryEvaluationException {
+                    return fetch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private List<Statement> fetch() throws QueryEvaluationException {
+        List<Statement> batch = new ArrayList<Statement>();
+        boolean done = false;
+        try {
+            while (!closed && batch.size() < batchSize && iteration.hasNext()) {
+                batch.add(iteration.next());
+            }
+            done = batch.size() < batchSize;
+            return batch;
+        } catch (QueryEvaluationException e) {
+            done = true;
+            throw e;
+        } catch (RuntimeException e) {
+            done = true;
+            throw e;
+        } finally {
+            synchronized (this) {
+                fetching = false;
+                exhausted = done;
+                if (done || closed) {
+                    closeIteration();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true once an empty batch has been, or will be, returned
+     */
+    public synchronized boolean isExhausted() {
+        return exhausted || closed;
+    }
+
+    /**
+     * Close the cursor. A batch that is being read stops early, and the underlying iteration is closed when it completes.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!fetching) {
+            closeIteration();
+        }
+    }
+
+    private void closeIteration() {
+        if (iterationClosed) {
+            return;
+        }
+        iterationClosed = true;
+        try {
+            iteration.close();
+        } catch (QueryEvaluationException e) {
+            logger.warn("Error closing query results", e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.lang.Validate;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A compact binary encoding of {@link Statement}s.
+ * <p>
+ * A statement is written as four terms: subject, predicate, object and context. Each term starts with a one byte type tag followed by
+ * its strings, and each string is a variable length (7 bits per byte) length prefix followed by the UTF-8 bytes:
+ * <p>
+ * <table border="1">
+ * <tr>
+ * <th>Tag</th>
+ * <th>Term</th>
+ * <th>Strings</th>
+ * </tr>
+ * <tr>
+ * <td>0</td>
+ * <td>no value (a statement without a context)</td>
+ * <td></td>
+ * </tr>
+ * <tr>
+ * <td>1</td>
+ * <td>URI</td>
+ * <td>uri</td>
+ * </tr>
+ * <tr>
+ * <td>2</td>
+ * <td>BNode</td>
+ * <td>id</td>
+ * </tr>
+ * <tr>
+ * <td>3</td>
+ * <td>plain literal</td>
+ * <td>label</td>
+ * </tr>
+ * <tr>
+ * <td>4</td>
+ * <td>literal with language</td>
+ * <td>label, language</td>
+ * </tr>
+ * <tr>
+ * <td>5</td>
+ * <td>literal with datatype</td>
+ * <td>label, datatype uri</td>
+ * </tr>
+ * </table>
+ * <p>
+ * Decoding builds the values directly from the bytes, without the quoting and re-parsing of the {@link StatementSerializer} form.
+ */
+public class BinaryStatementSerializer {
+    private static final byte NULL_TAG = 0;
+    private static final byte URI_TAG = 1;
+    private static final byte BNODE_TAG = 2;
+    private static final byte PLAIN_LITERAL_TAG = 3;
+    private static final byte LANGUAGE_LITERAL_TAG = 4;
+    private static final byte TYPED_LITERAL_TAG = 5;
+
+    private static ValueFactory VALUE_FACTORY = new ValueFactoryImpl();
+
+    /**
+     * Write a {@link Statement} to a byte array
+     *
+     * @param statement
+     *            the {@link Statement} to write
+     * @return the encoded statement
+     */
+    public static byte[] writeStatement(Statement statement) {
+        Validate.notNull(statement.getSubject());
+        Validate.notNull(statement.getPredicate());
+        Validate.notNull(statement.getObject());
+
+        int length = termLength(statement.getSubject()) + termLength(statement.getPredicate()) + termLength(statement.getObject())
+                + termLength(statement.getContext());
+        ByteBuffer out = ByteBuffer.allocate(length);
+        writeTerm(statement.getSubject(), out);
+        writeTerm(statement.getPredicate(), out);
+        writeTerm(statement.getObject(), out);
+        writeTerm(statement.getContext(), out);
+        return out.array();
+    }
+
+    /**
+     * Read a {@link Statement} from a byte array
+     *
+     * @param in
+     *            the encoded statement
+     * @return a {@link Statement}
+     */
+    public static Statement readStatement(byte[] in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in);
+        try {
+            Value subject = readTerm(buffer);
+            Value predicate = readTerm(buffer);
+            Value object = readTerm(buffer);
+            Value context = readTerm(buffer);
+
+            if (!(subject instanceof Resource) || !(predicate instanceof URI) || object == null
+                    || (context != null && !(context instanceof Resource))) {
+                throw new IOException("Not a valid statement");
+            }
+            if (context == null) {
+                return new StatementImpl((Resource) subject, (URI) predicate, object);
+            }
+            return new ContextStatementImpl((Resource) subject, (URI) predicate, object, (Resource) context);
+        } catch (RuntimeException e) {
+            // buffer underflows and bad lengths from a corrupt value
+            throw new IOException("Not a valid statement", e);
+        }
+    }
+
+    private static int termLength(Value value) {
+        if (value == null) {
+            return 1;
+        } else if (value instanceof URI) {
+            return 1 + stringLength(value.stringValue());
+        } else if (value instanceof BNode) {
+            return 1 + stringLength(((BNode) value).getID());
+        } else if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            int length = 1 + stringLength(literal.getLabel());
+            if (literal.getLanguage() != null) {
+                length += stringLength(literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                length += stringLength(literal.getDatatype().stringValue());
+            }
+            return length;
+        }
+        throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+    }
+
+    private static void writeTerm(Value value, ByteBuffer out) {
+        if (value == null) {
+            out.put(NULL_TAG);
+        } else if (value instanceof URI) {
+            out.put(URI_TAG);
+            writeString(value.stringValue(), out);
+        } else if (value instanceof BNode) {
+            out.put(BNODE_TAG);
+            writeString(((BNode) value).getID(), out);
+        } else {
+            Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                out.put(LANGUAGE_LITERAL_TAG);
+                writeString(literal.getLabel(), out);
+                writeString(literal.getLanguage(), out);
+            } else if (literal.getDatatype() != null) {
+                out.put(TYPED_LITERAL_TAG);
+                writeString(literal.getLabel(), out);
+                writeString(literal.getDatatype().stringValue(), out);
+            } else {
+                out.put(PLAIN_LITERAL_TAG);
+                writeString(literal.getLabel(), out);
+            }
+        }
+    }
+
+    private static Value readTerm(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+        case NULL_TAG:
+            return null;
+        case URI_TAG:
+            return VALUE_FACTORY.createURI(readString(in));
+        case BNODE_TAG:
+            return VALUE_FACTORY.createBNode(readString(in));
+        case PLAIN_LITERAL_TAG:
+            return VALUE_FACTORY.createLiteral(readString(in));
+        case LANGUAGE_LITERAL_TAG: {
+            String label = readString(in);
+            return VALUE_FACTORY.createLiteral(label, readString(in));
+        }
+        case TYPED_LITERAL_TAG: {
+            String label = readString(in);
+            return VALUE_FACTORY.createLiteral(label, VALUE_FACTORY.createURI(readString(in)));
+        }
+        default:
+            throw new IOException("Unknown term tag: " + tag);
+        }
+    }
+
+    private static int stringLength(String s) {
+        int utf8Length = utf8Length(s);
+        return varIntLength(utf8Length) + utf8Length;
+    }
+
+    private static void writeString(String s, ByteBuffer out) {
+        writeVarInt(utf8Length(s), out);
+        StatementSerializer.putUtf8(s, out);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, Charsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /**
+     * @return the number of bytes {@link StatementSerializer#putUtf8(String, ByteBuffer)} writes for <code>s</code>
+     */
+    private static int utf8Length(String s) {
+        int length = s.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    utf8Length += 1;
+                }
+            } else {
+                utf8Length += 3;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarInt(int value, ByteBuffer out) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed length");
+            }
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -19,6 +19,7 @@ import org.apache.accumulo.core.security.Authorizations;
 import org.apache.commons.lang.Validate;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.log4j.Logger;
 import org.openrdf.model.URI;
 import org.openrdf.model.impl.URIImpl;
@@ -39,6 +40,10 @@ public class ConfigUtils {
     public static final String CLOUDBASE_WRITER_MAX_LATENCY = "sc.cloudbase.writer.maxlatency";
     public static final String CLOUDBASE_WRITER_MAX_MEMORY = "sc.cloudbase.writer.maxmemory";
 
+    public static final String CLOUDBASE_WRITER_ADAPTIVE = "sc.cloudbase.writer.adaptive";
+    public static final String CLOUDBASE_WRITER_ADAPTIVE_MAX_MEMORY = "sc.cloudbase.writer.adaptive.maxmemory";
+    public static final String CLOUDBASE_WRITER_ADAPTIVE_MAX_WRITE_THREADS = "sc.cloudbase.writer.adaptive.maxwritethreads";
+
     public static final String FREE_TEXT_QUERY_TERM_LIMIT = "sc.freetext.querytermlimit";
 
     public static final String FREE_TEXT_DOC_TABLENAME = "sc.freetext.doctable";
@@ -53,6 +58,8 @@ public class ConfigUtils {
     private static final int WRITER_MAX_WRITE_THREADS = 1;
     private static final long WRITER_MAX_LATNECY = Long.MAX_VALUE;
     private static final long WRITER_MAX_MEMORY = 10000L;
+    private static final long WRITER_ADAPTIVE_MAX_MEMORY = 64L * 1024L * 1024L;
+    private static final int WRITER_ADAPTIVE_MAX_WRITE_THREADS = 8;
 
     public static final String DISPLAY_QUERY_PLAN = "query.printqueryplan";
 
@@ -64,6 +71,69 @@ public class ConfigUtils {
 
     public static final String GEO_PREDICATES_LIST = "sc.geo.predicates";
 
+    public static final String GEO_WRITE_BUFFER_MAX_FEATURES = "sc.geo.writebuffer.maxfeatures";
+    public static final String GEO_WRITE_BUFFER_MAX_BYTES = "sc.geo.writebuffer.maxbytes";
+    public static final String GEO_WRITE_BUFFER_MAX_LATENCY = "sc.geo.writebuffer.maxlatency";
+
+    public static final String GEO_STATEMENT_ENCODING = "sc.geo.statementencoding";
+    public static final String GEO_STATEMENT_ENCODING_STRING = "string";
+    public static final String GEO_STATEMENT_ENCODING_BINARY = "binary";
+
+    public static final String GEO_FEATURE_ID_HASH = "sc.geo.featureid.hash";
+
+    public static final String GEO_QUERY_CACHE_ENABLED = "sc.geo.querycache.enabled";
+    public static final String GEO_QUERY_CACHE_MAX_BYTES = "sc.geo.querycache.maxbytes";
+    public static final String GEO_QUERY_CACHE_MAX_RESULTS = "sc.geo.querycache.maxresults";
+    public static final String GEO_QUERY_CACHE_TTL = "sc.geo.querycache.ttl";
+
+    public static final String GEO_QUERY_REFINE = "sc.geo.query.refine";
+
+    public static final String GEO_ASYNC_QUERY_THREADS = "sc.geo.asyncquery.threads";
+    public static final String GEO_BATCH_QUERY_THREADS = "sc.geo.batchquery.threads";
+    public static final String GEO_NEAREST_INITIAL_RADIUS = "sc.geo.nearest.initialradius";
+
+    public static final String GEO_INDEX_ROW_GEOHASH_CHARS = "sc.geo.index.rowgeohash";
+    public static final String GEO_INDEX_COLUMN_GEOHASH_CHARS = "sc.geo.index.columngeohash";
+    public static final String GEO_INDEX_DATE_FORMAT = "sc.geo.index.dateformat";
+
+    public static final String GEO_PRESPLIT = "sc.geo.presplit";
+    public static final String GEO_SPLIT_GEOHASH_CHARS = "sc.geo.split.geohash";
+
+    public static final String GEO_TIME_ENABLED = "sc.geo.time.enabled";
+    public static final String GEO_TIME_PREDICATES_LIST = "sc.geo.time.predicates";
+
+    public static final String GEO_DATASTORE_SHARED = "sc.geo.datastore.shared";
+    public static final String GEO_DATASTORE_IDLE_TIMEOUT = "sc.geo.datastore.idletimeout";
+
+    public static final String GEO_METRICS_JMX = "sc.geo.metrics.jmx";
+    public static final String GEO_METRICS_REGISTRY = "sc.geo.metrics.registry";
+
+    public static final String GEO_INGEST_THREADS = "sc.geo.ingest.threads";
+    public static final String GEO_INGEST_QUEUE_SIZE = "sc.geo.ingest.queuesize";
+    public static final String GEO_INGEST_BATCH_SIZE = "sc.geo.ingest.batchsize";
+
+    private static final int GEO_WRITE_BUFFER_MAX_FEATURES_DEFAULT = 0;
+    private static final long GEO_WRITE_BUFFER_MAX_BYTES_DEFAULT = 4L * 1024L * 1024L;
+    private static final long GEO_WRITE_BUFFER_MAX_LATENCY_DEFAULT = 1000L;
+
+    private static final long GEO_QUERY_CACHE_MAX_BYTES_DEFAULT = 64L * 1024L * 1024L;
+    private static final int GEO_QUERY_CACHE_MAX_RESULTS_DEFAULT = 10000;
+    private static final long GEO_QUERY_CACHE_TTL_DEFAULT = 5L * 60L * 1000L;
+
+    private static final int GEO_ASYNC_QUERY_THREADS_DEFAULT = 4;
+    private static final int GEO_BATCH_QUERY_THREADS_DEFAULT = 4;
+    private static final double GEO_NEAREST_INITIAL_RADIUS_DEFAULT = 1000.0;
+
+    private static final int GEO_INDEX_ROW_GEOHASH_CHARS_DEFAULT = 3;
+    private static final int GEO_INDEX_COLUMN_GEOHASH_CHARS_DEFAULT = 2;
+    private static final String GEO_INDEX_DATE_FORMAT_DEFAULT = "yyyyMMdd";
+
+    private static final long GEO_DATASTORE_IDLE_TIMEOUT_DEFAULT = 5L * 60L * 1000L;
+
+    private static final int GEO_INGEST_THREADS_DEFAULT = 1;
+    private static final int GEO_INGEST_QUEUE_SIZE_DEFAULT = 16;
+    private static final int GEO_INGEST_BATCH_SIZE_DEFAULT = 500;
+
     public static boolean isDisplayQueryPlan(Configuration conf){
         return conf.getBoolean(DISPLAY_QUERY_PLAN, false);
     }
@@ -124,6 +194,15 @@ public class ConfigUtils {
         return getPredicates(conf, GEO_PREDICATES_LIST);
     }
 
+    /**
+     * @param conf
+     * @return the predicates whose date literals give the time of their subject's geometries. If empty, a date literal on any predicate is
+     *         used.
+     */
+    public static Set<URI> getGeoTimePredicates(Configuration conf) {
+        return getPredicates(conf, GEO_TIME_PREDICATES_LIST);
+    }
+
     private static Set<URI> getPredicates(Configuration conf, String confName) {
         String[] validPredicateStrings = conf.getStrings(confName, new String[] {});
         Set<URI> predicates = new HashSet<URI>();
@@ -139,6 +218,10 @@ public class ConfigUtils {
         Long DEFAULT_MAX_LATENCY = getWriterMaxLatency(conf);
         Integer DEFAULT_MAX_WRITE_THREADS = getWriterMaxWriteThreads(conf);
         Connector connector = ConfigUtils.getConnector(conf);
+        if (isWriterAdaptive(conf)) {
+            return new AdaptiveBatchWriter(connector, tablename, DEFAULT_MAX_MEMORY, getWriterAdaptiveMaxMemory(conf),
+                    DEFAULT_MAX_WRITE_THREADS, getWriterAdaptiveMaxWriteThreads(conf), DEFAULT_MAX_LATENCY);
+        }
         return connector.createBatchWriter(tablename, DEFAULT_MAX_MEMORY, DEFAULT_MAX_LATENCY, DEFAULT_MAX_WRITE_THREADS);
     }
 
@@ -170,6 +253,256 @@ public class ConfigUtils {
         return conf.getLong(CLOUDBASE_WRITER_MAX_MEMORY, WRITER_MAX_MEMORY);
     }
 
+    /**
+     * @param conf
+     * @return true if {@link #createDefaultBatchWriter(String, Configuration)} should return an {@link AdaptiveBatchWriter} that starts
+     *         from the writer settings and resizes itself up to {@link #CLOUDBASE_WRITER_ADAPTIVE_MAX_MEMORY} and
+     *         {@link #CLOUDBASE_WRITER_ADAPTIVE_MAX_WRITE_THREADS}. Defaults to false.
+     */
+    public static boolean isWriterAdaptive(Configuration conf) {
+        return conf.getBoolean(CLOUDBASE_WRITER_ADAPTIVE, false);
+    }
+
+    /**
+     * @param conf
+     * @return the largest buffer in bytes an adaptive writer grows to. Defaults to 64 MB.
+     */
+    public static long getWriterAdaptiveMaxMemory(Configuration conf) {
+        return conf.getLong(CLOUDBASE_WRITER_ADAPTIVE_MAX_MEMORY, WRITER_ADAPTIVE_MAX_MEMORY);
+    }
+
+    /**
+     * @param conf
+     * @return the most write threads an adaptive writer grows to. Defaults to 8.
+     */
+    public static int getWriterAdaptiveMaxWriteThreads(Configuration conf) {
+        return conf.getInt(CLOUDBASE_WRITER_ADAPTIVE_MAX_WRITE_THREADS, WRITER_ADAPTIVE_MAX_WRITE_THREADS);
+    }
+
+    /**
+     * @param conf
+     * @return the number of features to buffer before writing them to the geo datastore. A value of zero (the default) disables
+     *         buffering and writes each call to storeStatements as a single batch.
+     */
+    public static int getGeoWriteBufferMaxFeatures(Configuration conf) {
+        return conf.getInt(GEO_WRITE_BUFFER_MAX_FEATURES, GEO_WRITE_BUFFER_MAX_FEATURES_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the approximate number of bytes to buffer before writing to the geo datastore.
+     */
+    public static long getGeoWriteBufferMaxBytes(Configuration conf) {
+        return conf.getLong(GEO_WRITE_BUFFER_MAX_BYTES, GEO_WRITE_BUFFER_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the maximum time in milliseconds a buffered feature waits before being written to the geo datastore.
+     */
+    public static long getGeoWriteBufferMaxLatency(Configuration conf) {
+        return conf.getLong(GEO_WRITE_BUFFER_MAX_LATENCY, GEO_WRITE_BUFFER_MAX_LATENCY_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of threads that convert statements to features. A value of one (the default) converts statements on the
+     *         caller's thread. With more than one thread, statements are written asynchronously and are only guaranteed to be in the
+     *         datastore after a flush.
+     */
+    public static int getGeoIngestThreads(Configuration conf) {
+        return conf.getInt(GEO_INGEST_THREADS, GEO_INGEST_THREADS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of converted batches that may wait for the geo writer before the ingest threads block.
+     */
+    public static int getGeoIngestQueueSize(Configuration conf) {
+        return conf.getInt(GEO_INGEST_QUEUE_SIZE, GEO_INGEST_QUEUE_SIZE_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of statements an ingest thread converts in one unit of work.
+     */
+    public static int getGeoIngestBatchSize(Configuration conf) {
+        return conf.getInt(GEO_INGEST_BATCH_SIZE, GEO_INGEST_BATCH_SIZE_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return true if a new geo feature type should store statements in the compact binary encoding instead of four String attributes.
+     */
+    public static boolean isGeoStatementEncodingBinary(Configuration conf) {
+        return GEO_STATEMENT_ENCODING_BINARY.equalsIgnoreCase(conf.get(GEO_STATEMENT_ENCODING, GEO_STATEMENT_ENCODING_STRING));
+    }
+
+    /**
+     * @param conf
+     * @return the name of the hash used for geo feature IDs, see {@link StatementIdGenerator}. Defaults to MD5 for compatibility with
+     *         existing tables.
+     */
+    public static String getGeoFeatureIdHash(Configuration conf) {
+        return conf.get(GEO_FEATURE_ID_HASH, StatementIdGenerator.MD5);
+    }
+
+    /**
+     * @param conf
+     * @return true if the results of geo queries should be cached. Defaults to false. The cache is only invalidated by features written
+     *         through the same indexer, so leave it off unless that indexer is the only writer to the geo table: statements written by any
+     *         other indexer or loader are missing from cached results until they expire (see {@link #getGeoQueryCacheTtl(Configuration)}).
+     */
+    public static boolean isGeoQueryCacheEnabled(Configuration conf) {
+        return conf.getBoolean(GEO_QUERY_CACHE_ENABLED, false);
+    }
+
+    /**
+     * @param conf
+     * @return the estimated memory in bytes available to cached geo query results.
+     */
+    public static long getGeoQueryCacheMaxBytes(Configuration conf) {
+        return conf.getLong(GEO_QUERY_CACHE_MAX_BYTES, GEO_QUERY_CACHE_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of statements above which a geo query result is not cached.
+     */
+    public static int getGeoQueryCacheMaxResults(Configuration conf) {
+        return conf.getInt(GEO_QUERY_CACHE_MAX_RESULTS, GEO_QUERY_CACHE_MAX_RESULTS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the time in milliseconds after which a cached geo query result expires. This bounds how long writes by other writers to the
+     *         geo table can be missing from cached results.
+     */
+    public static long getGeoQueryCacheTtl(Configuration conf) {
+        return conf.getLong(GEO_QUERY_CACHE_TTL, GEO_QUERY_CACHE_TTL_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return true if geo queries should scan the bounding box of the query geometry and evaluate the spatial function on the client.
+     *         Defaults to false.
+     */
+    public static boolean isGeoQueryRefine(Configuration conf) {
+        return conf.getBoolean(GEO_QUERY_REFINE, false);
+    }
+
+    /**
+     * @param conf
+     * @return the number of threads that read the results of asynchronous geo queries.
+     */
+    public static int getGeoAsyncQueryThreads(Configuration conf) {
+        return conf.getInt(GEO_ASYNC_QUERY_THREADS, GEO_ASYNC_QUERY_THREADS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of scans of a batch geo query that run in parallel.
+     */
+    public static int getGeoBatchQueryThreads(Configuration conf) {
+        return conf.getInt(GEO_BATCH_QUERY_THREADS, GEO_BATCH_QUERY_THREADS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of geohash characters in the rows of a new geo table, see {@link GeoIndexSchema}.
+     */
+    public static int getGeoIndexRowGeohashChars(Configuration conf) {
+        return conf.getInt(GEO_INDEX_ROW_GEOHASH_CHARS, GEO_INDEX_ROW_GEOHASH_CHARS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the number of geohash characters in the column families of a new geo table, see {@link GeoIndexSchema}.
+     */
+    public static int getGeoIndexColumnGeohashChars(Configuration conf) {
+        return conf.getInt(GEO_INDEX_COLUMN_GEOHASH_CHARS, GEO_INDEX_COLUMN_GEOHASH_CHARS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return the date format in the rows of a new geo table, or an empty string for no date, see {@link GeoIndexSchema}.
+     */
+    public static String getGeoIndexDateFormat(Configuration conf) {
+        return conf.get(GEO_INDEX_DATE_FORMAT, GEO_INDEX_DATE_FORMAT_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return true if a new geo table should be split on its shards when it is created, see {@link GeoTableSplitter}. Defaults to false.
+     */
+    public static boolean isGeoPreSplit(Configuration conf) {
+        return conf.getBoolean(GEO_PRESPLIT, false);
+    }
+
+    /**
+     * @param conf
+     * @return the number of leading geohash characters to split a geo table on within each shard. Defaults to 0, which splits only on
+     *         shards.
+     */
+    public static int getGeoSplitGeohashChars(Configuration conf) {
+        return conf.getInt(GEO_SPLIT_GEOHASH_CHARS, 0);
+    }
+
+    /**
+     * @param conf
+     * @return true if a new geo table should index the time of each statement's subject along with its geometry. Defaults to false.
+     *         Existing tables keep the layout they were created with. A subject's time is attached to its geometries when it is stored in
+     *         the same call or a recent earlier one, with any number of ingest threads.
+     */
+    public static boolean isGeoTimeEnabled(Configuration conf) {
+        return conf.getBoolean(GEO_TIME_ENABLED, false);
+    }
+
+    /**
+     * @param conf
+     * @return the radius in meters of the first ring searched by a nearest neighbor geo query.
+     */
+    public static double getGeoNearestInitialRadius(Configuration conf) {
+        return conf.getDouble(GEO_NEAREST_INITIAL_RADIUS, GEO_NEAREST_INITIAL_RADIUS_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return true if geo indexers with the same connection settings should share one connection and data store, see
+     *         {@link GeoDataStoreRegistry}. Defaults to true.
+     */
+    public static boolean isGeoDataStoreShared(Configuration conf) {
+        return conf.getBoolean(GEO_DATASTORE_SHARED, true);
+    }
+
+    /**
+     * @param conf
+     * @return the time in milliseconds that a shared data store is kept after its last indexer is closed. Defaults to 5 minutes.
+     */
+    public static long getGeoDataStoreIdleTimeout(Configuration conf) {
+        return conf.getLong(GEO_DATASTORE_IDLE_TIMEOUT, GEO_DATASTORE_IDLE_TIMEOUT_DEFAULT);
+    }
+
+    /**
+     * @param conf
+     * @return true if the metrics of each geo indexer should be registered as a JMX MBean, see {@link GeoIndexerMetrics}. Defaults to true.
+     */
+    public static boolean isGeoMetricsJmx(Configuration conf) {
+        return conf.getBoolean(GEO_METRICS_JMX, true);
+    }
+
+    /**
+     * @param conf
+     * @return a new instance of the {@link GeoMetricsRegistry} class named by {@link #GEO_METRICS_REGISTRY}, or null if none is set.
+     */
+    public static GeoMetricsRegistry createGeoMetricsRegistry(Configuration conf) {
+        Class<? extends GeoMetricsRegistry> registryClass = conf.getClass(GEO_METRICS_REGISTRY, null, GeoMetricsRegistry.class);
+        if (registryClass == null) {
+            return null;
+        }
+        return ReflectionUtils.newInstance(registryClass, conf);
+    }
+
     public static String getUsername(JobContext job) {
         return getUsername(job.getConfiguration());
     }
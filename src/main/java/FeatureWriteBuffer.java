@@ -0,0 +1,227 @@
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.geotools.data.FeatureStore;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A bounded write-behind buffer in front of a {@link FeatureStore}. Features are collected in memory and written to the store as a single
+ * batch when the feature count, the estimated byte size, or the age of the oldest buffered feature reaches its limit, or when
+ * {@link #flush()} or {@link #close()} is called.
+ * <p>
+ * A maximum feature count of zero disables buffering: every call to {@link #addAll(Collection)} is written to the store as one batch
+ * before it returns.
+ */
+public class FeatureWriteBuffer implements Flushable, Closeable {
+    private static final Logger logger = Logger.getLogger(FeatureWriteBuffer.class);
+
+    private static final long MIN_TIMER_PERIOD = 10L;
+
+    private final FeatureStore<SimpleFeatureType, SimpleFeature> featureStore;
+    private final int maxFeatures;
+    private final long maxBytes;
+    private final long maxLatency;
+
+    private DefaultFeatureCollection buffer = new DefaultFeatureCollection();
+    private long bufferedBytes = 0;
+    private long oldestFeatureTime = 0;
+
+    private ScheduledExecutorService timer = null;
+    private IOException timerException = null;
+
+    private final List<WriteListener> listeners = new CopyOnWriteArrayList<WriteListener>();
+
+    private volatile GeoMetricsRegistry metrics = null;
+
+    /**
+     * Notified after each batch of features has been written to the store, or has failed to be written.
+     */
+    public interface WriteListener {
+        /**
+         * @param features
+         *            the features that were written
+         */
+        public void featuresWritten(Collection<SimpleFeature> features);
+    }
+
+    /**
+     * @param featureStore
+     *            the store to write to
+     * @param maxFeatures
+     *            the number of features to buffer; zero disables buffering
+     * @param maxBytes
+     *            the estimated number of bytes to buffer
+     * @param maxLatency
+     *            the maximum time in milliseconds a feature is held in the buffer; zero or less disables the timer
+     */
+    public FeatureWriteBuffer(FeatureStore<SimpleFeatureType, SimpleFeature> featureStore, int maxFeatures, long maxBytes, long maxLatency) {
+        this.featureStore = featureStore;
+        this.maxFeatures = maxFeatures;
+        this.maxBytes = maxBytes;
+        this.maxLatency = maxLatency;
+
+        if (isBuffering() && maxLatency > 0) {
+            long period = Math.max(MIN_TIMER_PERIOD, maxLatency / 2);
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("geo-write-buffer-%d").build());
+            timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushExpired();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void addWriteListener(WriteListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param metrics
+     *            receives the size and write time of every batch, see {@link GeoIndexerMetrics}
+     */
+    public void setMetrics(GeoMetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    private boolean isBuffering() {
+        return maxFeatures > 0;
+    }
+
+    /**
+     * Add the features to the buffer, writing batches to the store as the limits are reached.
+     *
+     * @param features
+     *            the features to add
+     * @throws IOException
+     *             if writing to the store fails, or a previous timed write failed
+     */
+    public synchronized void addAll(Collection<SimpleFeature> features) throws IOException {
+        checkTimerException();
+        if (!isBuffering()) {
+            for (SimpleFeature feature : features) {
+                buffer.add(feature);
+            }
+            write();
+            return;
+        }
+
+        for (SimpleFeature feature : features) {
+            if (buffer.isEmpty()) {
+                oldestFeatureTime = System.currentTimeMillis();
+            }
+            buffer.add(feature);
+            bufferedBytes += estimateSize(feature);
+
+            if (buffer.size() >= maxFeatures || bufferedBytes >= maxBytes) {
+                write();
+            }
+        }
+    }
+
+    /**
+     * @return the number of features currently held in the buffer
+     */
+    public synchronized int size() {
+        return buffer.size();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        checkTimerException();
+        write();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (timer != null) {
+            timer.shutdown();
+        }
+        flush();
+    }
+
+    private synchronized void flushExpired() {
+        if (buffer.isEmpty() || System.currentTimeMillis() - oldestFeatureTime < maxLatency) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            logger.error("Error writing buffered features", e);
+            timerException = e;
+        }
+    }
+
+    private void checkTimerException() throws IOException {
+        if (timerException != null) {
+            IOException e = timerException;
+            timerException = null;
+            throw e;
+        }
+    }
+
+    private void write() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        // reset the buffer before writing so that a failed batch is not written twice
+        DefaultFeatureCollection batch = buffer;
+        buffer = new DefaultFeatureCollection();
+        bufferedBytes = 0;
+
+        long start = System.nanoTime();
+        boolean written = false;
+        try {
+            featureStore.addFeatures(batch);
+            written = true;
+        } finally {
+            GeoMetricsRegistry metrics = this.metrics;
+            if (metrics != null) {
+                metrics.update(GeoIndexerMetrics.WRITE_BATCH_SIZE, batch.size());
+                metrics.update(GeoIndexerMetrics.WRITE_NANOS, System.nanoTime() - start);
+                metrics.increment(GeoIndexerMetrics.FEATURES_WRITTEN, batch.size());
+                if (!written) {
+                    metrics.increment(GeoIndexerMetrics.WRITE_FAILURES, 1);
+                }
+            }
+            // a failed batch may have been partially written, so listeners are notified either way
+            for (WriteListener listener : listeners) {
+                listener.featuresWritten(batch);
+            }
+        }
+    }
+
+    /**
+     * Estimate the in-memory size of a feature's attributes. This is only used to bound the buffer, so it does not need to be exact.
+     */
+    private static long estimateSize(SimpleFeature feature) {
+        long size = 2L * feature.getID().length();
+        for (Object attribute : feature.getAttributes()) {
+            if (attribute instanceof String) {
+                size += 2L * ((String) attribute).length();
+            } else if (attribute instanceof Geometry) {
+                size += 16L * ((Geometry) attribute).getNumPoints();
+            } else if (attribute instanceof byte[]) {
+                size += ((byte[]) attribute).length;
+            } else {
+                size += 16L;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,40 @@
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.openrdf.model.Statement;
+
+/**
+ * A {@link Statement} returned by {@link GeoIndexer#queryBatch}, tagged with the query geometries it matched.
+ */
+public class GeoBatchMatch {
+    private final Statement statement;
+    private final SortedSet<Integer> queryIndexes = new TreeSet<Integer>();
+
+    public GeoBatchMatch(Statement statement, Collection<Integer> queryIndexes) {
+        this.statement = statement;
+        this.queryIndexes.addAll(queryIndexes);
+    }
+
+    void addQueryIndexes(Collection<Integer> indexes) {
+        queryIndexes.addAll(indexes);
+    }
+
+    public Statement getStatement() {
+        return statement;
+    }
+
+    /**
+     * @return the positions, in the list of query geometries, of every geometry the statement matched
+     */
+    public SortedSet<Integer> getQueryIndexes() {
+        return Collections.unmodifiableSortedSet(queryIndexes);
+    }
+
+    @Override
+    public String toString() {
+        return statement + " " + queryIndexes;
+    }
+}
@@ -0,0 +1,385 @@
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A command line tool that streams N-Triples, N-Quads or Turtle files into a {@link GeoMesaGeoIndexer}.
+ * <p>
+ * The input is never held in memory as a whole. Statements are handed to the indexer in batches, and the indexer's write buffer and
+ * parallel ingest pipeline are enabled by default so that parsing, feature building and writing overlap.
+ * <p>
+ * For the line based formats (N-Triples and N-Quads) the loader periodically flushes the indexer and logs a checkpoint: a byte offset at
+ * the start of a line before which every statement has been written. After a failure, the load can be resumed from the last checkpoint
+ * with <code>--offset</code>. Feature IDs are hashes of the statements, so statements written again after a resume overwrite themselves.
+ * Turtle documents depend on prefixes declared earlier in the file, so they can only be loaded from the start.
+ */
+public class GeoBulkLoader {
+    private static final Logger logger = Logger.getLogger(GeoBulkLoader.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_CHECKPOINT_BATCHES = 100;
+    private static final long DEFAULT_REPORT_INTERVAL = 10L;
+    private static final int DEFAULT_WRITE_BUFFER_FEATURES = 10000;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final GeoMesaGeoIndexer indexer;
+    private final int batchSize;
+    private final int checkpointBatches;
+    private final long reportIntervalMillis;
+
+    private long statementsRead = 0;
+    private long startTime;
+    private long lastReportTime;
+    private long lastReportCount;
+    private long checkpointOffset;
+
+    public GeoBulkLoader(GeoMesaGeoIndexer indexer, int batchSize, int checkpointBatches, long reportIntervalMillis) {
+        this.indexer = indexer;
+        this.batchSize = batchSize;
+        this.checkpointBatches = checkpointBatches;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Load a file into the indexer and flush it.
+     *
+     * @param file
+     *            the file to load
+     * @param format
+     *            the RDF format of the file
+     * @param offset
+     *            the byte offset to start from. Must be zero or a checkpoint reported by an earlier load of the same file.
+     * @return the number of statements read
+     * @throws IllegalArgumentException
+     *             if the offset is outside of the file, or not zero for a format that is not line based
+     */
+    public long load(File file, RDFFormat format, long offset) throws IOException, RDFParseException, RDFHandlerException {
+        startTime = System.currentTimeMillis();
+        lastReportTime = startTime;
+        lastReportCount = 0;
+        statementsRead = 0;
+        checkpointOffset = offset;
+
+        RDFParser parser = Rio.createParser(format);
+        parser.setPreserveBNodeIDs(true);
+        BatchingHandler handler = new BatchingHandler();
+        parser.setRDFHandler(handler);
+
+        // skip() may move past the end of a file without saying so, so the offset is checked against the length up front
+        if (offset < 0 || offset > file.length()) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of " + file + ", which has " + file.length() + " bytes");
+        }
+
+        String baseUri = file.toURI().toString();
+        InputStream in = new FileInputStream(file);
+        try {
+            if (isLineBased(format)) {
+                loadLines(in, parser, handler, baseUri, offset);
+            } else {
+                if (offset != 0) {
+                    throw new IllegalArgumentException("Resuming from an offset is only supported for line based formats, not " + format);
+                }
+                parser.parse(in, baseUri);
+                handler.storeBatch();
+                indexer.flush();
+            }
+        } finally {
+            in.close();
+        }
+
+        report(true);
+        return statementsRead;
+    }
+
+    private static boolean isLineBased(RDFFormat format) {
+        return RDFFormat.NTRIPLES.equals(format) || RDFFormat.NQUADS.equals(format);
+    }
+
+    private void loadLines(InputStream in, RDFParser parser, BatchingHandler handler, String baseUri, long offset) throws IOException,
+            RDFParseException, RDFHandlerException {
+        long skipped = 0;
+        while (skipped < offset) {
+            long n = in.skip(offset - skipped);
+            if (n <= 0) {
+                // skip() may make no progress before the end of the stream, so fall back to reading a byte
+                if (in.read() < 0) {
+                    throw new IOException("Offset " + offset + " is past the end of the input");
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+
+        LineReader reader = new LineReader(in, offset);
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(READ_BUFFER_SIZE);
+        int batchesSinceCheckpoint = 0;
+        while (true) {
+            long chunkStart = reader.getOffset();
+            chunk.reset();
+            int lines = 0;
+            while (lines < batchSize && reader.readLine(chunk)) {
+                lines++;
+            }
+            if (lines == 0) {
+                break;
+            }
+
+            try {
+                parser.parse(new StringReader(new String(chunk.toByteArray(), Charsets.UTF_8)), baseUri);
+            } catch (RDFParseException e) {
+                logger.error("Error parsing input between byte offsets " + chunkStart + " and " + reader.getOffset()
+                        + ". Resume from checkpoint " + checkpointOffset);
+                throw e;
+            }
+            handler.storeBatch();
+
+            batchesSinceCheckpoint++;
+            if (batchesSinceCheckpoint >= checkpointBatches) {
+                indexer.flush();
+                checkpointOffset = reader.getOffset();
+                batchesSinceCheckpoint = 0;
+                logger.info("Checkpoint at byte offset " + checkpointOffset);
+            }
+        }
+
+        indexer.flush();
+        checkpointOffset = reader.getOffset();
+    }
+
+    /**
+     * @return the offset of the last checkpoint, from which a failed load can be resumed. After a complete load of a line based format,
+     *         this is the length of the input.
+     */
+    public long getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    private void report(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastReportTime < reportIntervalMillis) {
+            return;
+        }
+        double intervalSeconds = Math.max(now - lastReportTime, 1L) / 1000.0;
+        double totalSeconds = Math.max(now - startTime, 1L) / 1000.0;
+        logger.info(String.format("Read %d statements (%.0f/sec, %.0f/sec overall), %d rejected literals, checkpoint offset %d",
+                statementsRead, (statementsRead - lastReportCount) / intervalSeconds, statementsRead / totalSeconds,
+                indexer.getRejectedStatementCount(), checkpointOffset));
+        lastReportTime = now;
+        lastReportCount = statementsRead;
+    }
+
+    /**
+     * Collects parsed statements and hands them to the indexer in batches.
+     */
+    private class BatchingHandler extends RDFHandlerBase {
+        private List<Statement> batch = new ArrayList<Statement>(batchSize);
+
+        @Override
+        public void handleStatement(Statement statement) throws RDFHandlerException {
+            batch.add(statement);
+            statementsRead++;
+            if (batch.size() >= batchSize) {
+                try {
+                    storeBatch();
+                } catch (IOException e) {
+                    throw new RDFHandlerException(e);
+                }
+            }
+        }
+
+        void storeBatch() throws IOException {
+            if (!batch.isEmpty()) {
+                indexer.storeStatements(batch);
+                batch = new ArrayList<Statement>(batchSize);
+            }
+            report(false);
+        }
+    }
+
+    /**
+     * Reads lines of bytes from a stream while keeping track of the byte offset.
+     */
+    static class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+        private long offset;
+
+        LineReader(InputStream in, long offset) {
+            this.in = in;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the byte offset of the start of the next line
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Append the next line, including its line terminator, to <code>out</code>.
+         *
+         * @return false if the end of the stream was reached before any byte was read
+         */
+        boolean readLine(ByteArrayOutputStream out) throws IOException {
+            boolean read = false;
+            while (true) {
+                if (position >= limit) {
+                    limit = in.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (read) {
+                            // make sure the last line is terminated before the next line is appended
+                            out.write('\n');
+                        }
+                        return read;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                boolean endOfLine = position < limit;
+                if (endOfLine) {
+                    position++;
+                }
+                out.write(buffer, start, position - start);
+                offset += position - start;
+                read = true;
+                if (endOfLine) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("static-access")
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption(OptionBuilder.withLongOpt("input").hasArg().withArgName("file").isRequired()
+                .withDescription("the N-Triples, N-Quads or Turtle file to load").create("i"));
+        options.addOption(OptionBuilder.withLongOpt("format").hasArg().withArgName("format")
+                .withDescription("the RDF format name or MIME type. Defaults to the format implied by the file extension").create("f"));
+        options.addOption(OptionBuilder.withLongOpt("conf").hasArg().withArgName("file")
+                .withDescription("a Hadoop configuration file with the connection and geo index settings").create("c"));
+        options.addOption(OptionBuilder.withArgName("property=value").hasArgs(2).withValueSeparator()
+                .withDescription("set a configuration property").create("D"));
+        options.addOption(OptionBuilder.withLongOpt("batch").hasArg().withArgName("statements")
+                .withDescription("the number of statements per batch. Default " + DEFAULT_BATCH_SIZE).create("b"));
+        options.addOption(OptionBuilder.withLongOpt("checkpoint").hasArg().withArgName("batches")
+                .withDescription("the number of batches between checkpoints. Default " + DEFAULT_CHECKPOINT_BATCHES).create("k"));
+        options.addOption(OptionBuilder.withLongOpt("offset").hasArg().withArgName("bytes")
+                .withDescription("resume from a checkpoint byte offset (N-Triples and N-Quads only)").create("o"));
+        options.addOption(OptionBuilder.withLongOpt("report").hasArg().withArgName("seconds")
+                .withDescription("the progress report interval. Default " + DEFAULT_REPORT_INTERVAL).create("r"));
+        options.addOption(new Option("h", "help", false, "print this message"));
+        return options;
+    }
+
+    /**
+     * Build the indexer configuration from an optional configuration file and the <code>-D</code> properties, which override the file.
+     * The loader's defaults for the ingest threads and the write buffer size only apply to settings neither of them sets: values set on a
+     * {@link Configuration} override every resource added later, so defaults set first would hide the file.
+     *
+     * @param configFile
+     *            the path of a Hadoop configuration file, or null
+     * @param properties
+     *            the properties given on the command line
+     */
+    static Configuration createConfiguration(String configFile, Properties properties) {
+        Configuration conf = new Configuration();
+        if (configFile != null) {
+            conf.addResource(new Path(configFile));
+        }
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            conf.set(entry.getKey().toString(), entry.getValue().toString());
+        }
+        if (conf.get(ConfigUtils.GEO_INGEST_THREADS) == null) {
+            conf.setInt(ConfigUtils.GEO_INGEST_THREADS, Runtime.getRuntime().availableProcessors());
+        }
+        if (conf.get(ConfigUtils.GEO_WRITE_BUFFER_MAX_FEATURES) == null) {
+            conf.setInt(ConfigUtils.GEO_WRITE_BUFFER_MAX_FEATURES, DEFAULT_WRITE_BUFFER_FEATURES);
+        }
+        return conf;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = createOptions();
+        CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (org.apache.commons.cli.ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("GeoBulkLoader", options);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption("h")) {
+            new HelpFormatter().printHelp("GeoBulkLoader", options);
+            return;
+        }
+
+        File file = new File(cmd.getOptionValue("i"));
+        RDFFormat format;
+        if (cmd.hasOption("f")) {
+            String name = cmd.getOptionValue("f");
+            format = RDFFormat.valueOf(name);
+            if (format == null) {
+                format = RDFFormat.forMIMEType(name);
+            }
+        } else {
+            format = RDFFormat.forFileName(file.getName());
+        }
+        if (format == null) {
+            System.err.println("Unknown RDF format for " + file);
+            System.exit(1);
+            return;
+        }
+
+        Configuration conf = createConfiguration(cmd.getOptionValue("c"), cmd.getOptionProperties("D"));
+
+        int batchSize = Integer.parseInt(cmd.getOptionValue("b", Integer.toString(DEFAULT_BATCH_SIZE)));
+        int checkpointBatches = Integer.parseInt(cmd.getOptionValue("k", Integer.toString(DEFAULT_CHECKPOINT_BATCHES)));
+        long offset = Long.parseLong(cmd.getOptionValue("o", "0"));
+        long reportInterval = Long.parseLong(cmd.getOptionValue("r", Long.toString(DEFAULT_REPORT_INTERVAL))) * 1000L;
+
+        GeoMesaGeoIndexer indexer = new GeoMesaGeoIndexer(conf);
+        try {
+            GeoBulkLoader loader = new GeoBulkLoader(indexer, batchSize, checkpointBatches, reportInterval);
+            loader.load(file, format, offset);
+        } finally {
+            indexer.close();
+        }
+    }
+}
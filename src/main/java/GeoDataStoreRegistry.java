@@ -0,0 +1,272 @@
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Instance;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import org.geotools.data.DataStore;
+import org.geotools.feature.SchemaException;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.base.Objects;
+
+/**
+ * A reference counted registry of the Accumulo {@link Instance} and {@link Connector}, the GeoMesa {@link DataStore} and the RDF
+ * {@link SimpleFeatureType} behind a {@link GeoMesaGeoIndexer}, keyed by the connection settings, the table, the index schema and the
+ * writer settings.
+ * <p>
+ * Creating these means ZooKeeper and metadata round trips, which dominate the cost of creating an indexer. Indexers created with the same
+ * settings share one set through a {@link Lease} and release it when they are closed. A set that is no longer leased is kept for
+ * {@link ConfigUtils#GEO_DATASTORE_IDLE_TIMEOUT}, so that indexers created per request or per task reuse it, and is disposed the next
+ * time the registry is used after that.
+ * <p>
+ * The registry is thread safe. A missing set is created while holding the registry lock, which only happens once per key.
+ */
+public class GeoDataStoreRegistry {
+    private static final Logger logger = Logger.getLogger(GeoDataStoreRegistry.class);
+
+    private static final GeoDataStoreRegistry INSTANCE = new GeoDataStoreRegistry();
+
+    private final Map<Key, Entry> entries = new HashMap<Key, Entry>();
+
+    GeoDataStoreRegistry() {
+    }
+
+    /**
+     * @return the registry shared by every indexer in this JVM
+     */
+    public static GeoDataStoreRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease the connection, data store and feature type for a configuration, creating them if no indexer holds them.
+     * <p>
+     * If {@link ConfigUtils#GEO_DATASTORE_SHARED} is false, a new set is created that is disposed as soon as the lease is released.
+     *
+     * @param conf
+     *            the indexer configuration
+     * @return a lease that must be released when the indexer is closed
+     */
+    public Lease acquire(Configuration conf) throws AccumuloException, AccumuloSecurityException, TableNotFoundException, IOException,
+            SchemaException {
+        if (!ConfigUtils.isGeoDataStoreShared(conf)) {
+            return new Lease(Entry.create(null, conf));
+        }
+
+        Key key = Key.fromConfiguration(conf);
+        synchronized (this) {
+            disposeIdle(System.currentTimeMillis());
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = Entry.create(key, conf);
+                entries.put(key, entry);
+                logger.debug("Created shared data store for " + key);
+            }
+            entry.references++;
+            return new Lease(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.key == null) {
+            entry.dispose();
+            return;
+        }
+        synchronized (this) {
+            entry.references--;
+            if (entry.references == 0) {
+                entry.idleSince = System.currentTimeMillis();
+            }
+            disposeIdle(System.currentTimeMillis());
+        }
+    }
+
+    private void disposeIdle(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.references == 0 && now - entry.idleSince >= entry.idleTimeout) {
+                it.remove();
+                logger.debug("Disposing idle shared data store for " + entry.key);
+                entry.dispose();
+            }
+        }
+    }
+
+    /**
+     * Dispose every data store that is not leased, regardless of how long it has been idle.
+     */
+    public synchronized void disposeUnused() {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.references == 0) {
+                it.remove();
+                entry.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return the number of data stores held by the registry, leased or idle
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A share of the connection, data store and feature type for one configuration. Releasing a lease more than once has no effect.
+     */
+    public class Lease {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Instance getInstance() {
+            return entry.instance;
+        }
+
+        public Connector getConnector() {
+            return entry.connector;
+        }
+
+        public DataStore getDataStore() {
+            return entry.dataStore;
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return entry.featureType;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                GeoDataStoreRegistry.this.release(entry);
+            }
+        }
+    }
+
+    private static class Entry {
+        final Key key;
+        final long idleTimeout;
+        final Instance instance;
+        final Connector connector;
+        final DataStore dataStore;
+        final SimpleFeatureType featureType;
+
+        // guarded by the registry
+        int references = 0;
+        long idleSince = 0;
+
+        private Entry(Key key, long idleTimeout, Instance instance, Connector connector, DataStore dataStore,
+                SimpleFeatureType featureType) {
+            this.key = key;
+            this.idleTimeout = idleTimeout;
+            this.instance = instance;
+            this.connector = connector;
+            this.dataStore = dataStore;
+            this.featureType = featureType;
+        }
+
+        static Entry create(Key key, Configuration conf) throws AccumuloException, AccumuloSecurityException, TableNotFoundException,
+                IOException, SchemaException {
+            Instance instance = ConfigUtils.getInstance(conf);
+            Connector connector = instance.getConnector(ConfigUtils.getUsername(conf), ConfigUtils.getPassword(conf));
+            DataStore dataStore = GeoMesaGeoIndexer.createDataStore(instance, conf);
+            if (dataStore == null) {
+                throw new IOException("Could not find a GeoMesa data store for " + Key.fromConfiguration(conf));
+            }
+            boolean created = false;
+            try {
+                SimpleFeatureType featureType = GeoMesaGeoIndexer.getStatementFeatureType(dataStore, connector, conf);
+                created = true;
+                return new Entry(key, ConfigUtils.getGeoDataStoreIdleTimeout(conf), instance, connector, dataStore, featureType);
+            } finally {
+                if (!created) {
+                    dataStore.dispose();
+                }
+            }
+        }
+
+        void dispose() {
+            try {
+                dataStore.dispose();
+            } catch (RuntimeException e) {
+                logger.warn("Error disposing data store for " + key, e);
+            }
+        }
+    }
+
+    /**
+     * The settings that identify a data store. The password is part of the key but not of its string form.
+     */
+    private static class Key {
+        private final boolean mock;
+        private final String instanceName;
+        private final String zookeepers;
+        private final String user;
+        private final String password;
+        private final String auths;
+        private final String tableName;
+        private final String schemaFormat;
+        private final String writeMemory;
+        private final String writeThreads;
+
+        private Key(boolean mock, String instanceName, String zookeepers, String user, String password, String auths, String tableName,
+                String schemaFormat, String writeMemory, String writeThreads) {
+            this.mock = mock;
+            this.instanceName = instanceName;
+            this.zookeepers = zookeepers;
+            this.user = user;
+            this.password = password;
+            this.auths = auths;
+            this.tableName = tableName;
+            this.schemaFormat = schemaFormat;
+            this.writeMemory = writeMemory;
+            this.writeThreads = writeThreads;
+        }
+
+        static Key fromConfiguration(Configuration conf) {
+            return new Key(ConfigUtils.useMockInstance(conf), conf.get(ConfigUtils.CLOUDBASE_INSTANCE),
+                    conf.get(ConfigUtils.CLOUDBASE_ZOOKEEPERS), ConfigUtils.getUsername(conf), ConfigUtils.getPassword(conf), ConfigUtils
+                            .getAuthorizations(conf).toString(), ConfigUtils.getGeoTablename(conf), GeoIndexSchema.fromConfiguration(
+                            GeoMesaGeoIndexer.FEATURE_NAME, conf).getSchemaFormat(), conf.get(ConfigUtils.CLOUDBASE_WRITER_MAX_MEMORY),
+                    conf.get(ConfigUtils.CLOUDBASE_WRITER_MAX_WRITE_THREADS));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return mock == other.mock && Objects.equal(instanceName, other.instanceName) && Objects.equal(zookeepers, other.zookeepers)
+                    && Objects.equal(user, other.user) && Objects.equal(password, other.password) && Objects.equal(auths, other.auths)
+                    && Objects.equal(tableName, other.tableName) && Objects.equal(schemaFormat, other.schemaFormat)
+                    && Objects.equal(writeMemory, other.writeMemory) && Objects.equal(writeThreads, other.writeThreads);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(mock, instanceName, zookeepers, user, password, auths, tableName, schemaFormat, writeMemory,
+                    writeThreads);
+        }
+
+        @Override
+        public String toString() {
+            return (mock ? "mock:" : "") + instanceName + "@" + zookeepers + " as " + user + " [" + auths + "] " + tableName;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Calls the {@link GeoIndexer} query method for a GeoSPARQL Simple Features function URI from {@link GeoConstants}, so that callers can
+ * treat the spatial function as data.
+ */
+public class GeoFunctions {
+
+    /**
+     * The Simple Features functions supported by every {@link GeoIndexer}.
+     */
+    public static final List<URI> SF_FUNCTIONS = Collections.unmodifiableList(Arrays.asList(GeoConstants.GEO_SF_EQUALS,
+            GeoConstants.GEO_SF_DISJOINT, GeoConstants.GEO_SF_INTERSECTS, GeoConstants.GEO_SF_TOUCHES, GeoConstants.GEO_SF_CROSSES,
+            GeoConstants.GEO_SF_WITHIN, GeoConstants.GEO_SF_CONTAINS, GeoConstants.GEO_SF_OVERLAPS));
+
+    private GeoFunctions() {
+    }
+
+    /**
+     * @param indexer
+     *            the indexer to query
+     * @param function
+     *            one of the {@link #SF_FUNCTIONS}
+     * @param query
+     *            the queried geometry
+     * @param contraints
+     *            the {@link StatementContraints}, or null
+     * @return the statements that match the function
+     */
+    public static CloseableIteration<Statement, QueryEvaluationException> query(GeoIndexer indexer, URI function, Geometry query,
+            StatementContraints contraints) {
+        if (contraints == null) {
+            contraints = new StatementContraints();
+        }
+        if (GeoConstants.GEO_SF_EQUALS.equals(function)) {
+            return indexer.queryEquals(query, contraints);
+        } else if (GeoConstants.GEO_SF_DISJOINT.equals(function)) {
+            return indexer.queryDisjoint(query, contraints);
+        } else if (GeoConstants.GEO_SF_INTERSECTS.equals(function)) {
+            return indexer.queryIntersects(query, contraints);
+        } else if (GeoConstants.GEO_SF_TOUCHES.equals(function)) {
+            return indexer.queryTouches(query, contraints);
+        } else if (GeoConstants.GEO_SF_CROSSES.equals(function)) {
+            return indexer.queryCrosses(query, contraints);
+        } else if (GeoConstants.GEO_SF_WITHIN.equals(function)) {
+            return indexer.queryWithin(query, contraints);
+        } else if (GeoConstants.GEO_SF_CONTAINS.equals(function)) {
+            return indexer.queryContains(query, contraints);
+        } else if (GeoConstants.GEO_SF_OVERLAPS.equals(function)) {
+            return indexer.queryOverlaps(query, contraints);
+        }
+        throw new IllegalArgumentException("Unsupported geo function: " + function);
+    }
+}
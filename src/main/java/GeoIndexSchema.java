@@ -0,0 +1,176 @@
+
+import java.text.SimpleDateFormat;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * The layout of the GeoMesa index table, built into a GeoMesa index schema format string.
+ * <p>
+ * The row is <code>shard, feature name, geohash prefix, date</code>, the column family holds the next characters of the geohash, and the
+ * column qualifier holds the feature ID. The default layout is
+ *
+ * <pre>
+ * %~#s%25#r%RDF#cstr%0,3#gh%yyyyMMdd#d::%~#s%3,2#gh::%~#s%#id
+ * </pre>
+ * <p>
+ * More row geohash characters give finer-grained, more numerous scan ranges, which suits small queries over dense point data; fewer give
+ * coarser ranges that suit large polygons. More shards spread writes over more tablets at the cost of one range per shard per query.
+ * <p>
+ * GeoMesa's partition formatter takes the hash of the feature ID modulo <code>N + 1</code> for a schema of <code>%N#r</code>, so the rows
+ * fall in shards <code>0</code> to <code>N</code>, zero padded to the number of digits in <code>N</code>.
+ */
+public class GeoIndexSchema {
+    /**
+     * The geohash precision that GeoMesa indexes.
+     */
+    public static final int MAX_GEOHASH_CHARS = 7;
+
+    public static final int MAX_SHARDS = 999;
+
+    private final String featureName;
+    private final int shards;
+    private final int rowGeohashChars;
+    private final int columnGeohashChars;
+    private final String dateFormat;
+
+    /**
+     * @param featureName
+     *            the name of the feature type
+     * @param shards
+     *            the shard setting, which gives shards <code>0</code> to <code>shards</code>
+     * @param rowGeohashChars
+     *            the number of geohash characters in the row
+     * @param columnGeohashChars
+     *            the number of following geohash characters in the column family
+     * @param dateFormat
+     *            the {@link SimpleDateFormat} pattern of the date in the row, or null for no date
+     * @throws IllegalArgumentException
+     *             if the layout is not valid
+     */
+    public GeoIndexSchema(String featureName, int shards, int rowGeohashChars, int columnGeohashChars, String dateFormat) {
+        this.featureName = featureName;
+        this.shards = shards;
+        this.rowGeohashChars = rowGeohashChars;
+        this.columnGeohashChars = columnGeohashChars;
+        this.dateFormat = dateFormat == null || dateFormat.trim().isEmpty() ? null : dateFormat.trim();
+        validate();
+    }
+
+    /**
+     * @param featureName
+     *            the name of the feature type
+     * @param conf
+     *            the configuration holding the layout
+     * @return the layout configured by {@link ConfigUtils#GEO_NUM_PARTITIONS}, {@link ConfigUtils#GEO_INDEX_ROW_GEOHASH_CHARS},
+     *         {@link ConfigUtils#GEO_INDEX_COLUMN_GEOHASH_CHARS} and {@link ConfigUtils#GEO_INDEX_DATE_FORMAT}
+     * @throws IllegalArgumentException
+     *             if the layout is not valid
+     */
+    public static GeoIndexSchema fromConfiguration(String featureName, Configuration conf) {
+        return new GeoIndexSchema(featureName, ConfigUtils.getGeoNumPartitions(conf), ConfigUtils.getGeoIndexRowGeohashChars(conf),
+                ConfigUtils.getGeoIndexColumnGeohashChars(conf), ConfigUtils.getGeoIndexDateFormat(conf));
+    }
+
+    private void validate() {
+        if (featureName == null || featureName.isEmpty() || featureName.contains("%") || featureName.contains("#")
+                || featureName.contains(":")) {
+            throw new IllegalArgumentException("Not a valid feature name for an index schema: " + featureName);
+        }
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("The number of shards must be between 1 and " + MAX_SHARDS + ": " + shards);
+        }
+        if (rowGeohashChars < 1) {
+            throw new IllegalArgumentException("The row must hold at least one geohash character: " + rowGeohashChars);
+        }
+        if (columnGeohashChars < 1) {
+            throw new IllegalArgumentException("The column family must hold at least one geohash character: " + columnGeohashChars);
+        }
+        if (rowGeohashChars + columnGeohashChars > MAX_GEOHASH_CHARS) {
+            throw new IllegalArgumentException("The row and column family can hold at most " + MAX_GEOHASH_CHARS
+                    + " geohash characters: " + rowGeohashChars + " + " + columnGeohashChars);
+        }
+        if (dateFormat != null) {
+            if (dateFormat.contains("%") || dateFormat.contains("#") || dateFormat.contains(":")) {
+                throw new IllegalArgumentException("Not a valid date format for an index schema: " + dateFormat);
+            }
+            // throws IllegalArgumentException if the pattern is not valid
+            new SimpleDateFormat(dateFormat);
+        }
+    }
+
+    /**
+     * @return the shard setting, the highest shard number in the rows
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the number of distinct shards the rows fall in, which is one more than the shard setting
+     */
+    public int getShardCount() {
+        return shards + 1;
+    }
+
+    public int getRowGeohashChars() {
+        return rowGeohashChars;
+    }
+
+    public int getColumnGeohashChars() {
+        return columnGeohashChars;
+    }
+
+    public String getDateFormat() {
+        return dateFormat;
+    }
+
+    /**
+     * @return the envelope of the geohash cells of the row precision that cover an envelope, which bounds the rows GeoMesa scans for it
+     */
+    public Envelope getCoveringCells(Envelope envelope) {
+        int bits = 5 * rowGeohashChars;
+        double cellWidth = 360.0 / (1L << ((bits + 1) / 2));
+        double cellHeight = 180.0 / (1L << (bits / 2));
+        double minX = -180 + cellWidth * Math.floor((Math.max(-180, envelope.getMinX()) + 180) / cellWidth);
+        double minY = -90 + cellHeight * Math.floor((Math.max(-90, envelope.getMinY()) + 90) / cellHeight);
+        double maxX = Math.min(180, -180 + cellWidth * (Math.floor((Math.min(180, envelope.getMaxX()) + 180) / cellWidth) + 1));
+        double maxY = Math.min(90, -90 + cellHeight * (Math.floor((Math.min(90, envelope.getMaxY()) + 90) / cellHeight) + 1));
+        return new Envelope(minX, maxX, minY, maxY);
+    }
+
+    /**
+     * GeoMesa plans one row range per shard for every geohash cell of the row precision that an envelope touches.
+     *
+     * @return the estimated number of row ranges scanned for a query envelope
+     */
+    public long estimateRowRanges(Envelope envelope) {
+        int bits = 5 * rowGeohashChars;
+        double cellWidth = 360.0 / (1L << ((bits + 1) / 2));
+        double cellHeight = 180.0 / (1L << (bits / 2));
+        Envelope cells = getCoveringCells(envelope);
+        long lonCells = Math.max(1, Math.round(cells.getWidth() / cellWidth));
+        long latCells = Math.max(1, Math.round(cells.getHeight() / cellHeight));
+        return getShardCount() * lonCells * latCells;
+    }
+
+    /**
+     * @return the GeoMesa index schema format string
+     */
+    public String getSchemaFormat() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("%~#s%").append(shards).append("#r%").append(featureName).append("#cstr%0,").append(rowGeohashChars).append("#gh");
+        if (dateFormat != null) {
+            sb.append('%').append(dateFormat).append("#d");
+        }
+        sb.append("::%~#s%").append(rowGeohashChars).append(',').append(columnGeohashChars).append("#gh");
+        sb.append("::%~#s%#id");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSchemaFormat();
+    }
+}
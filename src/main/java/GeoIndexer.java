@@ -6,6 +6,7 @@ import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.openrdf.model.Statement;
@@ -13,6 +14,7 @@ import org.openrdf.model.URI;
 import org.openrdf.query.QueryEvaluationException;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
 
 /**
  * A repository to store, index, and retrieve {@link Statement}s based on geospatial features.
@@ -56,6 +58,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryEquals(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryEquals(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryEquals(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryEquals(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that is disjoint to the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -74,6 +116,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryDisjoint(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryDisjoint(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryDisjoint(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that Intersects the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -93,6 +175,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryIntersects(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryIntersects(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryIntersects(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that Touches the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -111,6 +233,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryTouches(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryTouches(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryTouches(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryTouches(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that crosses the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -129,6 +291,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryCrosses(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryCrosses(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryCrosses(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that is Within the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -148,6 +350,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryWithin(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryWithin(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryWithin(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryWithin(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that Contains the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -168,6 +410,46 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryContains(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryContains(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryContains(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryContains(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryContains(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryContains(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryContains(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
 	/**
 	 * Returns statements that contain a geometry that Overlaps the queried {@link Geometry} and meet the {@link StatementContraints}.
 	 * 
@@ -187,6 +469,135 @@ public interface GeoIndexer extends Closeable, Flushable {
 	 */
 	public abstract CloseableIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query);
 
+	/**
+	 * Returns one page of the results of {@link #queryOverlaps(Geometry)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, int limit, String resumeToken);
+
+	/**
+	 * Returns the results of {@link #queryOverlaps(Geometry)} that meet the {@link StatementContraints}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, StatementContraints contraints);
+
+	/**
+	 * Returns one page of the results of {@link #queryOverlaps(Geometry, StatementContraints)}.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}
+	 * @param limit
+	 *            the maximum number of statements to return
+	 * @param resumeToken
+	 *            null for the first page, otherwise the {@link PagedIteration#getResumeToken()} of the previous page
+	 * @return
+	 */
+	public abstract PagedIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, StatementContraints contraints,
+			int limit, String resumeToken);
+
+	/**
+	 * Evaluates a spatial function against many query geometries in one request. Overlapping query envelopes are merged into shared
+	 * scans, the scans run in parallel, and each matching statement is returned once, tagged with every query geometry it matched.
+	 * 
+	 * @param function
+	 *            one of the {@link GeoFunctions#SF_FUNCTIONS}
+	 * @param queries
+	 *            the queried geometries
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @return
+	 */
+	public abstract CloseableIteration<GeoBatchMatch, QueryEvaluationException> queryBatch(URI function, List<Geometry> queries,
+			StatementContraints contraints);
+
+	/**
+	 * Returns the statements that contain a geometry within a geodesic distance of the queried {@link Geometry}. Coordinates are
+	 * longitude/latitude in SRID 4326.
+	 * 
+	 * @param query
+	 *            the queried geometry
+	 * @param distance
+	 *            the distance in meters
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryDWithin(Geometry query, double distance,
+			StatementContraints contraints);
+
+	/**
+	 * Returns the k statements that contain the geometries with the smallest geodesic distance to the queried {@link Point}, nearest
+	 * first. Coordinates are longitude/latitude in SRID 4326.
+	 * 
+	 * @param query
+	 *            the queried point
+	 * @param k
+	 *            the number of statements to return
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @return
+	 */
+	public abstract CloseableIteration<Statement, QueryEvaluationException> queryNearest(Point query, int k, StatementContraints contraints);
+
+	/**
+	 * Counts the statements that match a spatial function, without returning them.
+	 * 
+	 * @param function
+	 *            one of the {@link GeoFunctions#SF_FUNCTIONS}
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @return the number of statements that the matching query method would return
+	 * @throws QueryEvaluationException
+	 */
+	public abstract long count(URI function, Geometry query, StatementContraints contraints) throws QueryEvaluationException;
+
+	/**
+	 * Checks if any statement matches a spatial function, stopping at the first match.
+	 * 
+	 * @param function
+	 *            one of the {@link GeoFunctions#SF_FUNCTIONS}
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @return true if the matching query method would return at least one statement
+	 * @throws QueryEvaluationException
+	 */
+	public abstract boolean exists(URI function, Geometry query, StatementContraints contraints) throws QueryEvaluationException;
+
+	/**
+	 * Explains how a spatial function query is evaluated, and optionally runs it to measure what it costs.
+	 * 
+	 * @param function
+	 *            one of the {@link GeoFunctions#SF_FUNCTIONS}
+	 * @param query
+	 *            the queried geometry
+	 * @param contraints
+	 *            the {@link StatementContraints}, or null
+	 * @param analyze
+	 *            true to run the query and include the runtime statistics
+	 * @return the query plan
+	 * @throws QueryEvaluationException
+	 */
+	public abstract GeoQueryExplanation explain(URI function, Geometry query, StatementContraints contraints, boolean analyze)
+			throws QueryEvaluationException;
+
 	/**
 	 * @return the set of predicates indexed by the indexer.
 	 */
@@ -0,0 +1,308 @@
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The counters and histograms of a {@link GeoMesaGeoIndexer}, readable directly or over JMX, and forwarded to an optional
+ * {@link GeoMetricsRegistry}.
+ * <p>
+ * Counters:
+ * <ul>
+ * <li>statements.received: statements passed to storeStatements</li>
+ * <li>statements.filtered: statements skipped because of their predicate or a non-literal object</li>
+ * <li>statements.rejected: statements whose literal could not be parsed as a geometry</li>
+ * <li>features.written: features written to the datastore, including failed batches</li>
+ * <li>write.failures: batches that failed to be written</li>
+ * <li>query.cacheHits: queries answered from the query cache, which are not counted in the query histograms</li>
+ * </ul>
+ * Histograms:
+ * <ul>
+ * <li>ingest.batchSize: statements per storeStatements call</li>
+ * <li>write.batchSize and write.nanos: features per batch written to the datastore, and the time to write it</li>
+ * <li>query.&lt;operation&gt;.firstResultNanos, .scanNanos and .results: for each query operation, the time from the start of the scan to
+ * the first result and to the end of the results, and the number of results</li>
+ * </ul>
+ * Over JMX, every counter is an attribute, and every histogram has the attributes <code>name.count</code>, <code>name.mean</code>,
+ * <code>name.p50</code>, <code>name.p99</code>, <code>name.p999</code> and <code>name.max</code>. Histogram percentiles are accurate to a
+ * power of two.
+ */
+public class GeoIndexerMetrics implements GeoMetricsRegistry, DynamicMBean {
+    private static final Logger logger = Logger.getLogger(GeoIndexerMetrics.class);
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    public static final String STATEMENTS_RECEIVED = "statements.received";
+    public static final String STATEMENTS_FILTERED = "statements.filtered";
+    public static final String STATEMENTS_REJECTED = "statements.rejected";
+    public static final String FEATURES_WRITTEN = "features.written";
+    public static final String WRITE_FAILURES = "write.failures";
+    public static final String QUERY_CACHE_HITS = "query.cacheHits";
+    public static final String INGEST_BATCH_SIZE = "ingest.batchSize";
+    public static final String WRITE_BATCH_SIZE = "write.batchSize";
+    public static final String WRITE_NANOS = "write.nanos";
+
+    private static final String[] HISTOGRAM_ATTRIBUTES = { "count", "mean", "p50", "p99", "p999", "max" };
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    private final GeoMetricsRegistry delegate;
+
+    private ObjectName objectName = null;
+
+    /**
+     * @param delegate
+     *            the registry to forward every metric to, or null
+     */
+    public GeoIndexerMetrics(GeoMetricsRegistry delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the name of the histogram of a query operation
+     */
+    public static String queryMetric(String operation, String histogram) {
+        return "query." + operation + "." + histogram;
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counters.putIfAbsent(name, new AtomicLong());
+            counter = counters.get(name);
+        }
+        counter.addAndGet(delta);
+        if (delegate != null) {
+            delegate.increment(name, delta);
+        }
+    }
+
+    @Override
+    public void update(String name, long value) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histograms.putIfAbsent(name, new Histogram());
+            histogram = histograms.get(name);
+        }
+        histogram.update(value);
+        if (delegate != null) {
+            delegate.update(name, value);
+        }
+    }
+
+    /**
+     * Record the timings and result count of a query.
+     */
+    public void updateQuery(String operation, long firstResultNanos, long scanNanos, long results) {
+        if (firstResultNanos >= 0) {
+            update(queryMetric(operation, "firstResultNanos"), firstResultNanos);
+        }
+        update(queryMetric(operation, "scanNanos"), scanNanos);
+        update(queryMetric(operation, "results"), results);
+    }
+
+    /**
+     * @return the value of a counter, or zero if it was never incremented
+     */
+    public long getCount(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * @return a histogram, or null if it was never updated
+     */
+    public Histogram getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * A histogram of non-negative values in power of two buckets.
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void update(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param p
+         *            the percentile, between 0 and 1
+         * @return the upper bound of the bucket holding the percentile, and never more than the maximum
+         */
+        public long getPercentile(double p) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upper = i == 0 ? 1 : (i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * Register with the platform MBean server as <code>geo:type=GeoMesaGeoIndexer,table=...,id=...</code>. Failures are logged, not
+     * thrown.
+     */
+    public synchronized void register(String tableName) {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("geo:type=GeoMesaGeoIndexer,table=" + ObjectName.quote(tableName) + ",id="
+                    + NEXT_ID.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            logger.warn("Could not register geo indexer metrics for " + tableName, e);
+        }
+    }
+
+    /**
+     * @return the JMX name, or null if not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Could not unregister geo indexer metrics " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        AtomicLong counter = counters.get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        int dot = attribute.lastIndexOf('.');
+        Histogram histogram = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+        if (histogram != null) {
+            String statistic = attribute.substring(dot + 1);
+            if ("count".equals(statistic)) {
+                return histogram.getCount();
+            } else if ("mean".equals(statistic)) {
+                return histogram.getMean();
+            } else if ("p50".equals(statistic)) {
+                return histogram.getPercentile(0.5);
+            } else if ("p99".equals(statistic)) {
+                return histogram.getPercentile(0.99);
+            } else if ("p999".equals(statistic)) {
+                return histogram.getPercentile(0.999);
+            } else if ("max".equals(statistic)) {
+                return histogram.getMax();
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // omitted, as the JMX contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Geo indexer metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * The attributes of the metrics recorded so far; new metrics appear as the indexer is used.
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (String name : new TreeMap<String, AtomicLong>(counters).keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "counter " + name, true, false, false));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(histograms).entrySet()) {
+            for (String statistic : HISTOGRAM_ATTRIBUTES) {
+                String type = "mean".equals(statistic) ? "double" : "long";
+                attributes.add(new MBeanAttributeInfo(entry.getKey() + "." + statistic, type, statistic + " of histogram " + entry.getKey(),
+                        true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Geo indexer metrics", attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -9,17 +9,32 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.Instance;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.mock.MockInstance;
-import org.apache.commons.lang.StringUtils;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 import org.geotools.data.DataStore;
@@ -28,24 +43,34 @@ import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.FeatureStore;
 import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
-import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.geotools.filter.text.cql2.CQLException;
-import org.geotools.filter.text.ecql.ECQL;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.query.QueryEvaluationException;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import com.vividsolutions.jts.io.ParseException;
-import com.vividsolutions.jts.io.WKTReader;
 
 /**
  * A {@link GeoIndexer} wrapper around a GeoMesa {@link AccumuloDataStore}. This class configures and connects to the Datastore, creates the
@@ -87,23 +112,56 @@ import com.vividsolutions.jts.io.WKTReader;
  * <td>String</td>
  * </tr>
  * </table>
+ * <p>
+ * When {@link ConfigUtils#GEO_STATEMENT_ENCODING} is set to {@link ConfigUtils#GEO_STATEMENT_ENCODING_BINARY} before the feature type is
+ * created, the four String attributes are replaced by a single byte[] attribute (STMT) that holds the statement in the compact
+ * {@link BinaryStatementSerializer} form. An existing feature type keeps the layout it was created with.
  */
 public class GeoMesaGeoIndexer implements GeoIndexer {
 
     private static final Logger logger = Logger.getLogger(GeoMesaGeoIndexer.class);
 
-    private static final String FEATURE_NAME = "RDF";
+    static final String FEATURE_NAME = "RDF";
+
+    private static final FilterFactory2 FILTER_FACTORY = CommonFactoryFinder.getFilterFactory2();
 
     private static final String SUBJECT_ATTRIBUTE = "S";
     private static final String PREDICATE_ATTRIBUTE = "P";
     private static final String OBJECT_ATTRIBUTE = "O";
     private static final String CONTEXT_ATTRIBUTE = "C";
+    static final String STATEMENT_ATTRIBUTE = "STMT";
+    private static final String TIME_ATTRIBUTE = Constants.SF_PROPERTY_START_TIME;
+
+    private static final int RECENT_TIMES_SIZE = 10000;
+
+    private static final double CANDIDATE_ENVELOPE_PADDING = 1e-9;
+
+    private static final double NEAREST_RADIUS_GROWTH = 4.0;
+    private static final int NEAREST_INITIAL_CAPACITY = 1024;
 
     private Set<URI> validPredicates;
 
     private FeatureStore<SimpleFeatureType, SimpleFeature> featureStore;
     private FeatureSource<SimpleFeatureType, SimpleFeature> featureSource;
     private SimpleFeatureType featureType;
+    private boolean binaryEncoding;
+    private boolean refine;
+    private boolean timeEnabled;
+    private Set<URI> timePredicates;
+    private Cache<Resource, Date> recentTimes;
+    private double nearestInitialRadius;
+    private StatementIdGenerator idGenerator;
+    private FeatureWriteBuffer writeBuffer;
+    private ParallelFeatureIngester ingester = null;
+    private GeoQueryCache queryCache = null;
+    private ExecutorService batchQueryExecutor;
+    private GeoDataStoreRegistry.Lease dataStoreLease;
+
+    private GeoIndexerMetrics metrics;
+    private GeoIndexSchema indexSchema;
+    private String tableName;
+    private boolean displayQueryPlan;
+    private volatile List<String> tableIterators = null;
 
     public GeoMesaGeoIndexer(Configuration conf) throws AccumuloException, AccumuloSecurityException, TableNotFoundException, IOException,
             SchemaException {
@@ -114,18 +172,59 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
             SchemaException {
         validPredicates = ConfigUtils.getGeoPredicates(conf);
 
-        DataStore dataStore = createDataStore(conf);
-        featureType = getStatementFeatureType(dataStore);
+        dataStoreLease = GeoDataStoreRegistry.getInstance().acquire(conf);
+        DataStore dataStore = dataStoreLease.getDataStore();
+        featureType = dataStoreLease.getFeatureType();
+        binaryEncoding = featureType.getDescriptor(STATEMENT_ATTRIBUTE) != null;
+        timeEnabled = featureType.getDescriptor(TIME_ATTRIBUTE) != null;
+        timePredicates = ConfigUtils.getGeoTimePredicates(conf);
+        recentTimes = CacheBuilder.newBuilder().maximumSize(RECENT_TIMES_SIZE).<Resource, Date> build();
+        idGenerator = StatementIdGenerator.forName(ConfigUtils.getGeoFeatureIdHash(conf));
+        refine = ConfigUtils.isGeoQueryRefine(conf);
+        nearestInitialRadius = ConfigUtils.getGeoNearestInitialRadius(conf);
+        indexSchema = GeoIndexSchema.fromConfiguration(FEATURE_NAME, conf);
+        tableName = ConfigUtils.getGeoTablename(conf);
+        displayQueryPlan = ConfigUtils.isDisplayQueryPlan(conf);
 
         featureSource = dataStore.getFeatureSource(featureType.getName());
         if (!(featureSource instanceof FeatureStore))
             throw new IllegalStateException("Could not retrieve feature store");
         featureStore = (FeatureStore<SimpleFeatureType, SimpleFeature>) featureSource;
+
+        metrics = new GeoIndexerMetrics(ConfigUtils.createGeoMetricsRegistry(conf));
+        if (ConfigUtils.isGeoMetricsJmx(conf)) {
+            metrics.register(ConfigUtils.getGeoTablename(conf));
+        }
+
+        writeBuffer = new FeatureWriteBuffer(featureStore, ConfigUtils.getGeoWriteBufferMaxFeatures(conf),
+                ConfigUtils.getGeoWriteBufferMaxBytes(conf), ConfigUtils.getGeoWriteBufferMaxLatency(conf));
+        writeBuffer.setMetrics(metrics);
+
+        if (ConfigUtils.isGeoQueryCacheEnabled(conf)) {
+            queryCache = new GeoQueryCache(ConfigUtils.getGeoQueryCacheMaxBytes(conf), ConfigUtils.getGeoQueryCacheMaxResults(conf),
+                    ConfigUtils.getGeoQueryCacheTtl(conf));
+            writeBuffer.addWriteListener(queryCache);
+        }
+
+        batchQueryExecutor = Executors.newFixedThreadPool(ConfigUtils.getGeoBatchQueryThreads(conf), new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("geo-batch-query-%d").build());
+
+        int ingestThreads = ConfigUtils.getGeoIngestThreads(conf);
+        if (ingestThreads > 1) {
+            Function<Collection<Statement>, List<SimpleFeature>> featureBuilder;
+            featureBuilder = new Function<Collection<Statement>, List<SimpleFeature>>() {
+                @Override
+                public List<SimpleFeature> apply(Collection<Statement> statements) {
+                    return createFeatures(statements);
+                }
+            };
+            ingester = new ParallelFeatureIngester(featureBuilder, writeBuffer, ingestThreads, ConfigUtils.getGeoIngestQueueSize(conf),
+                    ConfigUtils.getGeoIngestBatchSize(conf));
+        }
     }
 
-    private static DataStore createDataStore(Configuration conf) throws IOException {
+    static DataStore createDataStore(Instance instance, Configuration conf) throws IOException {
         // get the configuration parameters
-        Instance instance = ConfigUtils.getInstance(conf);
         boolean useMock = instance instanceof MockInstance;
         String instanceId = instance.getInstanceName();
         String zookeepers = instance.getZooKeepers();
@@ -133,9 +232,7 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
         String password = ConfigUtils.getPassword(conf);
         String auths = ConfigUtils.getAuthorizations(conf).toString();
         String tableName = ConfigUtils.getGeoTablename(conf);
-        int numParitions = ConfigUtils.getGeoNumPartitions(conf);
-
-        String featureSchemaFormat = "%~#s%" + numParitions + "#r%" + FEATURE_NAME + "#cstr%0,3#gh%yyyyMMdd#d::%~#s%3,2#gh::%~#s%#id";
+        String featureSchemaFormat = GeoIndexSchema.fromConfiguration(FEATURE_NAME, conf).getSchemaFormat();
         // build the map of parameters
         Map<String, Serializable> params = new HashMap<String, Serializable>();
         params.put("instanceId", instanceId);
@@ -146,33 +243,93 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
         params.put("tableName", tableName);
         params.put("indexSchemaFormat", featureSchemaFormat);
         params.put("useMock", Boolean.toString(useMock));
+        // only pass writer settings that were set, so GeoMesa keeps its own defaults rather than the small generic ones. Like useMock,
+        // they are passed as strings, which the data store factory parses to the type of each parameter.
+        if (conf.get(ConfigUtils.CLOUDBASE_WRITER_MAX_MEMORY) != null) {
+            params.put("writeMemory", Long.toString(ConfigUtils.getWriterMaxMemory(conf)));
+        }
+        if (conf.get(ConfigUtils.CLOUDBASE_WRITER_MAX_WRITE_THREADS) != null) {
+            params.put("writeThreads", Integer.toString(ConfigUtils.getWriterMaxWriteThreads(conf)));
+        }
 
         // fetch the data store from the finder
         return DataStoreFinder.getDataStore(params);
     }
 
-    private static SimpleFeatureType getStatementFeatureType(DataStore dataStore) throws IOException, SchemaException {
+    static SimpleFeatureType getStatementFeatureType(DataStore dataStore, Connector connector, Configuration conf) throws IOException,
+            SchemaException, AccumuloException, AccumuloSecurityException, TableNotFoundException {
         SimpleFeatureType featureType;
 
         String[] datastoreFeatures = dataStore.getTypeNames();
         if (Arrays.asList(datastoreFeatures).contains(FEATURE_NAME)) {
-            featureType = dataStore.getSchema(FEATURE_NAME);
+            return dataStore.getSchema(FEATURE_NAME);
+        } else if (ConfigUtils.isGeoStatementEncodingBinary(conf)) {
+            SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+            builder.setName(FEATURE_NAME);
+            builder.add(STATEMENT_ATTRIBUTE, byte[].class);
+            builder.add(Constants.SF_PROPERTY_GEOMETRY, Geometry.class, GeometryDecoder.SRID);
+            if (ConfigUtils.isGeoTimeEnabled(conf)) {
+                builder.add(TIME_ATTRIBUTE, Date.class);
+            }
+            featureType = builder.buildFeatureType();
+            dataStore.createSchema(featureType);
         } else {
             String featureSchema = SUBJECT_ATTRIBUTE + ":String," //
                     + PREDICATE_ATTRIBUTE + ":String," //
                     + OBJECT_ATTRIBUTE + ":String," //
                     + CONTEXT_ATTRIBUTE + ":String," //
                     + Constants.SF_PROPERTY_GEOMETRY + ":Geometry:srid=4326";
+            if (ConfigUtils.isGeoTimeEnabled(conf)) {
+                featureSchema += "," + TIME_ATTRIBUTE + ":Date";
+            }
             featureType = DataUtilities.createType(FEATURE_NAME, featureSchema);
             dataStore.createSchema(featureType);
         }
+
+        // spread the first writes to the new table over the tablet servers
+        if (ConfigUtils.isGeoPreSplit(conf)) {
+            GeoTableSplitter.fromConfiguration(FEATURE_NAME, conf).split(connector, ConfigUtils.getGeoTablename(conf));
+        }
         return featureType;
     }
 
     @Override
     public void storeStatements(Collection<Statement> statements) throws IOException {
+        metrics.increment(GeoIndexerMetrics.STATEMENTS_RECEIVED, statements.size());
+        metrics.update(GeoIndexerMetrics.INGEST_BATCH_SIZE, statements.size());
+        if (ingester != null) {
+            if (timeEnabled) {
+                // collect the times before the statements are split into batches, so that a subject's time and geometry are paired
+                // even when they are converted on different threads
+                final Map<Resource, Date> times = collectTimes(statements);
+                ingester.submit(statements, new Function<Collection<Statement>, List<SimpleFeature>>() {
+                    @Override
+                    public List<SimpleFeature> apply(Collection<Statement> batch) {
+                        return createFeatures(batch, times);
+                    }
+                });
+            } else {
+                ingester.submit(statements);
+            }
+            return;
+        }
+
+        List<SimpleFeature> featureCollection = createFeatures(statements);
+
+        // hand this feature collection to the write buffer
+        if (!featureCollection.isEmpty()) {
+            writeBuffer.addAll(featureCollection);
+        }
+    }
+
+    private List<SimpleFeature> createFeatures(Collection<Statement> statements) {
+        return createFeatures(statements, timeEnabled ? collectTimes(statements) : Collections.<Resource, Date> emptyMap());
+    }
+
+    private List<SimpleFeature> createFeatures(Collection<Statement> statements, Map<Resource, Date> times) {
         // create a feature collection
-        DefaultFeatureCollection featureCollection = new DefaultFeatureCollection();
+        List<SimpleFeature> featureCollection = new ArrayList<SimpleFeature>();
+        long filtered = 0;
 
         for (Statement statement : statements) {
             // if the predicate list is empty, accept all predicates.
@@ -181,18 +338,20 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
 
             if (isValidPredicate && (statement.getObject() instanceof Literal)) {
                 try {
-                    SimpleFeature feature = createFeature(featureType, statement);
+                    SimpleFeature feature = createFeature(featureType, statement, times);
                     featureCollection.add(feature);
                 } catch (ParseException e) {
+                    metrics.increment(GeoIndexerMetrics.STATEMENTS_REJECTED, 1);
                     logger.warn("Error getting geo from statement: " + statement.toString(), e);
                 }
+            } else {
+                filtered++;
             }
         }
-
-        // write this feature collection to the store
-        if (!featureCollection.isEmpty()) {
-            featureStore.addFeatures(featureCollection);
+        if (filtered > 0) {
+            metrics.increment(GeoIndexerMetrics.STATEMENTS_FILTERED, filtered);
         }
+        return featureCollection;
     }
 
     @Override
@@ -200,25 +359,71 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
         storeStatements(Collections.singleton(statement));
     }
 
-    private static SimpleFeature createFeature(SimpleFeatureType featureType, Statement statement) throws ParseException {
-        String subject = StatementSerializer.writeSubject(statement);
-        String predicate = StatementSerializer.writePredicate(statement);
-        String object = StatementSerializer.writeObject(statement);
-        String context = StatementSerializer.writeContext(statement);
+    /**
+     * Find the times of the subjects in a batch of statements. The time of a subject comes from an xsd:dateTime or xsd:date literal on one
+     * of the configured time predicates, or on any predicate if none are configured. Times are also remembered for the most recent
+     * subjects, so a time stored in an earlier batch than its geometry is still found. With several ingest threads this runs on the caller's
+     * thread before the statements are dispatched, so pairing does not depend on which thread converts which statement.
+     */
+    private Map<Resource, Date> collectTimes(Collection<Statement> statements) {
+        Map<Resource, Date> times = new HashMap<Resource, Date>();
+        for (Statement statement : statements) {
+            if (!(statement.getObject() instanceof Literal)) {
+                continue;
+            }
+            if (!timePredicates.isEmpty() && !timePredicates.contains(statement.getPredicate())) {
+                continue;
+            }
+            Literal literal = (Literal) statement.getObject();
+            if (!XMLSchema.DATETIME.equals(literal.getDatatype()) && !XMLSchema.DATE.equals(literal.getDatatype())) {
+                continue;
+            }
+            try {
+                Date time = literal.calendarValue().toGregorianCalendar().getTime();
+                times.put(statement.getSubject(), time);
+                recentTimes.put(statement.getSubject(), time);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Error getting time from statement: " + statement.toString(), e);
+            }
+        }
+        return times;
+    }
 
+    /**
+     * @return the feature for a single statement, with the time of its subject if one was seen in a recent batch. A time stored after
+     *         its geometry, in a later call, is not attached.
+     */
+    SimpleFeature createFeature(Statement statement) throws ParseException {
+        return createFeature(featureType, statement, Collections.<Resource, Date> emptyMap());
+    }
+
+    private SimpleFeature createFeature(SimpleFeatureType featureType, Statement statement, Map<Resource, Date> times)
+            throws ParseException {
         // create the feature
         Object[] noValues = {};
 
         // create the hash
-        String statementId = Md5Hash.md5Base64(StatementSerializer.writeStatement(statement));
+        String statementId = idGenerator.createId(statement);
         SimpleFeature newFeature = SimpleFeatureBuilder.build(featureType, noValues, statementId);
 
         // write the statement data to the fields
-        newFeature.setDefaultGeometry((new WKTReader()).read(getWellKnownText(statement)));
-        newFeature.setAttribute(SUBJECT_ATTRIBUTE, subject);
-        newFeature.setAttribute(PREDICATE_ATTRIBUTE, predicate);
-        newFeature.setAttribute(OBJECT_ATTRIBUTE, object);
-        newFeature.setAttribute(CONTEXT_ATTRIBUTE, context);
+        newFeature.setDefaultGeometry(GeometryDecoder.read(getWellKnownText(statement)));
+        if (binaryEncoding) {
+            newFeature.setAttribute(STATEMENT_ATTRIBUTE, BinaryStatementSerializer.writeStatement(statement));
+        } else {
+            newFeature.setAttribute(SUBJECT_ATTRIBUTE, StatementSerializer.writeSubject(statement));
+            newFeature.setAttribute(PREDICATE_ATTRIBUTE, StatementSerializer.writePredicate(statement));
+            newFeature.setAttribute(OBJECT_ATTRIBUTE, StatementSerializer.writeObject(statement));
+            newFeature.setAttribute(CONTEXT_ATTRIBUTE, StatementSerializer.writeContext(statement));
+        }
+
+        if (timeEnabled) {
+            Date time = times.get(statement.getSubject());
+            if (time == null) {
+                time = recentTimes.getIfPresent(statement.getSubject());
+            }
+            newFeature.setAttribute(TIME_ATTRIBUTE, time);
+        }
 
         // preserve the ID that we created for this feature
         // (set the hint to FALSE to have GeoTools generate IDs)
@@ -227,6 +432,21 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
         return newFeature;
     }
 
+    Statement readStatement(SimpleFeature feature) throws QueryEvaluationException {
+        if (binaryEncoding) {
+            try {
+                return BinaryStatementSerializer.readStatement((byte[]) feature.getAttribute(STATEMENT_ATTRIBUTE));
+            } catch (IOException e) {
+                throw new QueryEvaluationException("Error reading statement from feature: " + feature.getID(), e);
+            }
+        }
+        String subjectString = feature.getAttribute(SUBJECT_ATTRIBUTE).toString();
+        String predicateString = feature.getAttribute(PREDICATE_ATTRIBUTE).toString();
+        String objectString = feature.getAttribute(OBJECT_ATTRIBUTE).toString();
+        String contextString = feature.getAttribute(CONTEXT_ATTRIBUTE).toString();
+        return StatementSerializer.readStatement(subjectString, predicateString, objectString, contextString);
+    }
+
     private static String getWellKnownText(Statement statement) throws ParseException {
         org.openrdf.model.Value v = statement.getObject();
         if (!(v instanceof Literal)) {
@@ -238,114 +458,1071 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
             logger.warn("Literal is not of type " + GeoConstants.XMLSCHEMA_OGC_WKT + ": " + statement.toString());
         }
 
-        return lit.getLabel().toString();
+        return lit.getLabel();
     }
 
-    private CloseableIteration<Statement, QueryEvaluationException> performQuery(String type, Geometry geometry) {
-        List<String> filterParms = new ArrayList<String>();
+    private PagedIteration<Statement, QueryEvaluationException> performQuery(URI function, Geometry geometry, StatementContraints contraints,
+            int limit, String resumeToken) {
+        // only complete result sets are cached
+        GeoQueryCache.Key cacheKey = null;
+        if (queryCache != null && limit <= 0 && resumeToken == null) {
+            cacheKey = new GeoQueryCache.Key(function, geometry, contraints);
+            PagedIteration<Statement, QueryEvaluationException> cached = queryCache.get(cacheKey);
+            if (cached != null) {
+                metrics.increment(GeoIndexerMetrics.QUERY_CACHE_HITS, 1);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Using cached results for geomesa query : " + describeQuery(function, geometry, contraints));
+                }
+                return cached;
+            }
+        }
 
-        filterParms.add(type + "(" + Constants.SF_PROPERTY_GEOMETRY + ", " + geometry + " )");
+        QueryPlan plan = planQuery(function, geometry, contraints);
+        logger.info("Performing geomesa query : " + plan.description);
+        if (displayQueryPlan) {
+            logger.info(explain(function, geometry, contraints, plan));
+        }
 
-        String filterString = StringUtils.join(filterParms, " AND ");
-        logger.info("Performing geomesa query : " + filterString);
+        PagedIteration<Statement, QueryEvaluationException> results;
+        results = new FeatureStatementIteration(function.getLocalName(), plan.filter, plan.description, plan.featureFilter,
+                plan.statementFilter, limit, resumeToken);
+        if (cacheKey != null) {
+            results = queryCache.cache(cacheKey, results);
+        }
+        return results;
+    }
+
+    /**
+     * The parts of a query: the filter evaluated by the datastore, and the filters applied to the returned features and statements.
+     */
+    private static class QueryPlan {
+        private Filter filter;
+        private Predicate<SimpleFeature> featureFilter = null;
+        private Predicate<Statement> statementFilter = null;
+        private String description;
 
-        return getIteratorWrapper(filterString);
+        /**
+         * @return true if every feature returned by the datastore is a result
+         */
+        boolean isExact() {
+            return featureFilter == null && statementFilter == null;
+        }
     }
 
-    private CloseableIteration<Statement, QueryEvaluationException> getIteratorWrapper(final String filterString) {
+    private QueryPlan planQuery(URI function, Geometry geometry, StatementContraints contraints) {
+        QueryPlan plan = new QueryPlan();
+        List<Filter> filters = new ArrayList<Filter>();
 
-        return new CloseableIteration<Statement, QueryEvaluationException>() {
+        // in refine mode the datastore only returns the candidates in the bounding box of the query geometry, and the spatial function is
+        // evaluated exactly against a prepared copy of the query geometry
+        if (refine) {
+            Filter candidateFilter = createCandidateFilter(function, geometry);
+            if (candidateFilter != Filter.INCLUDE) {
+                filters.add(candidateFilter);
+            }
+            plan.featureFilter = new PreparedGeometryFilter(function, geometry);
+        } else {
+            filters.add(createSpatialFilter(function, geometry));
+        }
 
-            private FeatureIterator<SimpleFeature> featureIterator = null;
+        plan.statementFilter = addConstraints(filters, contraints);
+        plan.filter = andFilters(filters, null);
+        plan.description = describeQuery(function, geometry, contraints);
+        return plan;
+    }
 
-            FeatureIterator<SimpleFeature> getIterator() throws QueryEvaluationException {
-                if (featureIterator == null) {
-                    Filter cqlFilter;
-                    try {
-                        cqlFilter = ECQL.toFilter(filterString);
-                    } catch (CQLException e) {
-                        logger.error("Error parsing query: " + filterString, e);
-                        throw new QueryEvaluationException(e);
+    @Override
+    public long count(URI function, Geometry query, StatementContraints contraints) throws QueryEvaluationException {
+        long start = System.nanoTime();
+        long count = performCount(function, query, contraints);
+        metrics.updateQuery("count", -1, System.nanoTime() - start, count);
+        return count;
+    }
+
+    private long performCount(URI function, Geometry query, StatementContraints contraints) throws QueryEvaluationException {
+        QueryPlan plan = planQuery(function, query, contraints);
+        logger.info("Counting geomesa query : " + plan.description);
+
+        if (plan.isExact()) {
+            // let the datastore count if it can do so without returning the features
+            try {
+                int count = featureSource.getCount(new Query(featureType.getTypeName(), plan.filter));
+                if (count >= 0) {
+                    return count;
+                }
+            } catch (IOException e) {
+                logger.error("Error counting query: " + plan.description, e);
+                throw new QueryEvaluationException(e);
+            }
+        }
+        return countFeatures(plan, Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean exists(URI function, Geometry query, StatementContraints contraints) throws QueryEvaluationException {
+        QueryPlan plan = planQuery(function, query, contraints);
+        logger.info("Checking for results of geomesa query : " + plan.description);
+        long start = System.nanoTime();
+        long count = countFeatures(plan, 1);
+        metrics.updateQuery("exists", -1, System.nanoTime() - start, count);
+        return count > 0;
+    }
+
+    @Override
+    public GeoQueryExplanation explain(URI function, Geometry query, StatementContraints contraints, boolean analyze)
+            throws QueryEvaluationException {
+        long start = System.nanoTime();
+        QueryPlan plan = planQuery(function, query, contraints);
+        long planNanos = System.nanoTime() - start;
+
+        GeoQueryExplanation explanation = explain(function, query, contraints, plan);
+        if (analyze) {
+            analyze(plan, explanation, planNanos);
+        }
+        return explanation;
+    }
+
+    private GeoQueryExplanation explain(URI function, Geometry query, StatementContraints contraints, QueryPlan plan) {
+        // a disjoint query matches features anywhere, so it scans every row
+        Envelope envelope = GeoConstants.GEO_SF_DISJOINT.equals(function) ? new Envelope(-180, 180, -90, 90) : query.getEnvelopeInternal();
+
+        List<String> clientFilters = new ArrayList<String>();
+        if (plan.featureFilter != null) {
+            clientFilters.add("exact " + function.getLocalName() + " against a prepared copy of the query geometry");
+        }
+        if (plan.statementFilter != null) {
+            clientFilters.add("statement constraints " + contraints);
+        }
+        return new GeoQueryExplanation(plan.description, plan.filter.toString(), clientFilters, indexSchema.getShardCount(),
+                indexSchema.estimateRowRanges(envelope), indexSchema.getCoveringCells(envelope), listTableIterators());
+    }
+
+    /**
+     * GeoMesa configures its own iterators on each scan, which the datastore does not expose, so these are the iterators set on the table.
+     * They are listed on first use and kept, so that logging the plan of every query does not cost a round trip per query; iterators set on
+     * the table later are not shown until the indexer is recreated.
+     */
+    private List<String> listTableIterators() {
+        List<String> iterators = tableIterators;
+        if (iterators != null) {
+            return iterators;
+        }
+        iterators = new ArrayList<String>();
+        try {
+            Map<String, EnumSet<IteratorScope>> settings = dataStoreLease.getConnector().tableOperations().listIterators(tableName);
+            for (Map.Entry<String, EnumSet<IteratorScope>> entry : new TreeMap<String, EnumSet<IteratorScope>>(settings).entrySet()) {
+                iterators.add(entry.getKey() + ": " + entry.getValue());
+            }
+            // only a successful listing is kept, so a failed one is retried
+            tableIterators = Collections.unmodifiableList(iterators);
+        } catch (AccumuloException e) {
+            logger.warn("Could not list the iterators of " + tableName, e);
+        } catch (AccumuloSecurityException e) {
+            logger.warn("Could not list the iterators of " + tableName, e);
+        } catch (TableNotFoundException e) {
+            logger.warn("Could not list the iterators of " + tableName, e);
+        }
+        return iterators;
+    }
+
+    /**
+     * Run a query the way the query iterators do, timing the scan and the client-side filters.
+     */
+    private void analyze(QueryPlan plan, GeoQueryExplanation explanation, long planNanos) throws QueryEvaluationException {
+        long scanned = 0;
+        long results = 0;
+        long filterNanos = 0;
+        long firstResultNanos = -1;
+
+        long start = System.nanoTime();
+        FeatureIterator<SimpleFeature> features;
+        try {
+            features = featureSource.getFeatures(new Query(featureType.getTypeName(), plan.filter)).features();
+        } catch (IOException e) {
+            logger.error("Error analyzing query: " + plan.description, e);
+            throw new QueryEvaluationException(e);
+        }
+        try {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                scanned++;
+                long filterStart = System.nanoTime();
+                boolean matches = plan.featureFilter == null || plan.featureFilter.apply(feature);
+                if (matches) {
+                    Statement statement = readStatement(feature);
+                    matches = plan.statementFilter == null || plan.statementFilter.apply(statement);
+                }
+                long now = System.nanoTime();
+                filterNanos += now - filterStart;
+                if (matches) {
+                    results++;
+                    if (firstResultNanos < 0) {
+                        firstResultNanos = now - start;
                     }
+                }
+            }
+        } finally {
+            features.close();
+        }
+        explanation.setRuntimeStats(scanned, results, planNanos, firstResultNanos, System.nanoTime() - start, filterNanos);
+    }
+
+    /**
+     * Count the results of a query, up to a maximum, without decoding statements unless the plan filters on them. Only the attributes
+     * needed by the client-side filters are fetched.
+     */
+    private long countFeatures(QueryPlan plan, long max) throws QueryEvaluationException {
+        Query query = new Query(featureType.getTypeName(), plan.filter);
+        if (plan.statementFilter == null) {
+            query.setPropertyNames(new String[] { Constants.SF_PROPERTY_GEOMETRY });
+        }
+        if (plan.isExact() && max < Integer.MAX_VALUE) {
+            query.setMaxFeatures((int) max);
+        }
+
+        long count = 0;
+        FeatureIterator<SimpleFeature> features;
+        try {
+            features = featureSource.getFeatures(query).features();
+        } catch (IOException e) {
+            logger.error("Error counting query: " + plan.description, e);
+            throw new QueryEvaluationException(e);
+        }
+        try {
+            while (count < max && features.hasNext()) {
+                SimpleFeature feature = features.next();
+                if (plan.featureFilter != null && !plan.featureFilter.apply(feature)) {
+                    continue;
+                }
+                if (plan.statementFilter != null && !plan.statementFilter.apply(readStatement(feature))) {
+                    continue;
+                }
+                count++;
+            }
+        } finally {
+            features.close();
+        }
+        return count;
+    }
+
+    /**
+     * Build the GeoTools filter for a GeoSPARQL Simple Features function, directly from the {@link Geometry} object.
+     */
+    private static Filter createSpatialFilter(URI function, Geometry geometry) {
+        Expression property = FILTER_FACTORY.property(Constants.SF_PROPERTY_GEOMETRY);
+        Expression literal = FILTER_FACTORY.literal(geometry);
+
+        if (GeoConstants.GEO_SF_EQUALS.equals(function)) {
+            return FILTER_FACTORY.equal(property, literal);
+        } else if (GeoConstants.GEO_SF_DISJOINT.equals(function)) {
+            return FILTER_FACTORY.disjoint(property, literal);
+        } else if (GeoConstants.GEO_SF_INTERSECTS.equals(function)) {
+            return FILTER_FACTORY.intersects(property, literal);
+        } else if (GeoConstants.GEO_SF_TOUCHES.equals(function)) {
+            return FILTER_FACTORY.touches(property, literal);
+        } else if (GeoConstants.GEO_SF_CROSSES.equals(function)) {
+            return FILTER_FACTORY.crosses(property, literal);
+        } else if (GeoConstants.GEO_SF_WITHIN.equals(function)) {
+            return FILTER_FACTORY.within(property, literal);
+        } else if (GeoConstants.GEO_SF_CONTAINS.equals(function)) {
+            return FILTER_FACTORY.contains(property, literal);
+        } else if (GeoConstants.GEO_SF_OVERLAPS.equals(function)) {
+            return FILTER_FACTORY.overlaps(property, literal);
+        }
+        throw new IllegalArgumentException("Unsupported geo function: " + function);
+    }
+
+    /**
+     * Build the coarse first phase of a refined query: the features whose bounding box intersects the bounding box of the query geometry.
+     * Every feature that can satisfy the function is a candidate, except for disjoint queries, where every feature is.
+     */
+    private static Filter createCandidateFilter(URI function, Geometry geometry) {
+        if (GeoConstants.GEO_SF_DISJOINT.equals(function)) {
+            return Filter.INCLUDE;
+        }
+        return createBoundingBoxFilter(geometry.getEnvelopeInternal());
+    }
+
+    private static Filter createBoundingBoxFilter(Envelope queryEnvelope) {
+        // pad the envelope so that the box of a point or a horizontal or vertical line still has an area
+        Envelope envelope = new Envelope(queryEnvelope);
+        envelope.expandBy(CANDIDATE_ENVELOPE_PADDING);
+        return FILTER_FACTORY.bbox(Constants.SF_PROPERTY_GEOMETRY, envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(),
+                envelope.getMaxY(), "EPSG:" + GeometryDecoder.SRID);
+    }
+
+    /**
+     * Push the statement constraints into the query. The binary encoding has no attributes to filter on, so the constraints are applied
+     * to the decoded statements instead.
+     *
+     * @return the filter to apply to the decoded statements, or null
+     */
+    private Predicate<Statement> addConstraints(List<Filter> filters, StatementContraints contraints) {
+        if (contraints == null || contraints.isEmpty()) {
+            return null;
+        }
+        if (contraints.hasTimeInterval()) {
+            filters.add(createTimeFilter(contraints));
+        }
+        if (!contraints.hasSubject() && !contraints.hasPredicates() && !contraints.hasContext()) {
+            return null;
+        }
+        if (binaryEncoding) {
+            return getStatementFilter(contraints);
+        }
+        addConstraintFilters(filters, contraints);
+        return null;
+    }
 
-                    Query query = new Query(featureType.getTypeName(), cqlFilter);
+    private Filter createTimeFilter(StatementContraints contraints) {
+        if (!timeEnabled) {
+            throw new IllegalArgumentException("The geo table was created without a time attribute, see " + ConfigUtils.GEO_TIME_ENABLED);
+        }
+        Expression time = FILTER_FACTORY.property(TIME_ATTRIBUTE);
+        if (contraints.getStartTime() == null) {
+            return FILTER_FACTORY.lessOrEqual(time, FILTER_FACTORY.literal(contraints.getEndTime()));
+        } else if (contraints.getEndTime() == null) {
+            return FILTER_FACTORY.greaterOrEqual(time, FILTER_FACTORY.literal(contraints.getStartTime()));
+        }
+        return FILTER_FACTORY.between(time, FILTER_FACTORY.literal(contraints.getStartTime()), FILTER_FACTORY.literal(contraints.getEndTime()));
+    }
+
+    private static void addConstraintFilters(List<Filter> filters, StatementContraints contraints) {
+        if (contraints.hasSubject()) {
+            filters.add(attributeEquals(SUBJECT_ATTRIBUTE, contraints.getSubject().toString()));
+        }
+        if (contraints.hasPredicates()) {
+            List<Filter> predicateFilters = new ArrayList<Filter>();
+            for (URI predicate : contraints.getPredicates()) {
+                predicateFilters.add(attributeEquals(PREDICATE_ATTRIBUTE, predicate.toString()));
+            }
+            filters.add(predicateFilters.size() == 1 ? predicateFilters.get(0) : FILTER_FACTORY.or(predicateFilters));
+        }
+        if (contraints.hasContext()) {
+            filters.add(attributeEquals(CONTEXT_ATTRIBUTE, contraints.getContext().toString()));
+        }
+    }
+
+    private static Filter attributeEquals(String attribute, String value) {
+        return FILTER_FACTORY.equals(FILTER_FACTORY.property(attribute), FILTER_FACTORY.literal(value));
+    }
+
+    /**
+     * Summarize a query for logging without printing every coordinate of the geometry.
+     */
+    private static String describeQuery(URI function, Geometry geometry, StatementContraints contraints) {
+        return describeQuery(function.getLocalName(), geometry, null, contraints);
+    }
+
+    /**
+     * @param argument
+     *            a further argument of the operation, such as a distance, or null
+     */
+    private static String describeQuery(String operation, Geometry geometry, String argument, StatementContraints contraints) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(operation).append('(').append(geometry.getGeometryType());
+        sb.append(" with ").append(geometry.getNumPoints()).append(" points in ").append(geometry.getEnvelopeInternal());
+        if (argument != null) {
+            sb.append(", ").append(argument);
+        }
+        sb.append(')');
+        if (contraints != null && !contraints.isEmpty()) {
+            sb.append(" AND ").append(contraints);
+        }
+        return sb.toString();
+    }
+
+    private static Predicate<Statement> getStatementFilter(final StatementContraints contraints) {
+        return new Predicate<Statement>() {
+            @Override
+            public boolean apply(Statement statement) {
+                return contraints.matches(statement);
+            }
+        };
+    }
+
+    /**
+     * An iteration of the {@link Statement}s stored in the features that match a query.
+     * <p>
+     * When a limit is given, the iteration stops after <code>limit</code> statements and {@link #getResumeToken()} returns a token of the
+     * form <code>position:featureId</code>: the number of features consumed from the start of the results up to and including the last
+     * returned statement, and the ID of that feature. Resuming skips that many features and checks that the last skipped feature has the
+     * expected ID, so a page is never silently shifted if the datastore returns the results in a different order.
+     */
+    private class FeatureStatementIteration implements PagedIteration<Statement, QueryEvaluationException> {
+        private final String operation;
+        private final Filter filter;
+        private final String description;
+        private final Predicate<SimpleFeature> featureFilter;
+        private final Predicate<Statement> statementFilter;
+        private final int limit;
+        private final String resumeToken;
+
+        private FeatureIterator<SimpleFeature> featureIterator = null;
+        private long position = 0;
+
+        private Statement nextStatement = null;
+        private String nextFeatureId = null;
+        private long nextPosition = 0;
+
+        private long returned = 0;
+        private long lastReturnedPosition = 0;
+        private String lastReturnedFeatureId = null;
+
+        private long scanStart = 0;
+        private long firstResultNanos = -1;
+        private boolean recorded = false;
+
+        /**
+         * @param operation
+         *            the name of the query operation in the metrics
+         * @param filter
+         *            the query filter
+         * @param description
+         *            a summary of the query for log messages
+         * @param featureFilter
+         *            a filter applied to the features before their statements are decoded, or null
+         * @param statementFilter
+         *            a filter applied to the decoded statements, or null
+         * @param limit
+         *            the maximum number of statements to return, or zero for no limit
+         * @param resumeToken
+         *            the token returned by the previous page, or null
+         */
+        FeatureStatementIteration(String operation, Filter filter, String description, Predicate<SimpleFeature> featureFilter,
+                Predicate<Statement> statementFilter, int limit, String resumeToken) {
+            this.operation = operation;
+            this.filter = filter;
+            this.description = description;
+            this.featureFilter = featureFilter;
+            this.statementFilter = statementFilter;
+            this.limit = limit;
+            this.resumeToken = resumeToken;
+        }
+
+        private FeatureIterator<SimpleFeature> getIterator() throws QueryEvaluationException {
+            if (featureIterator == null) {
+                long skip = 0;
+                String skipToId = null;
+                if (resumeToken != null) {
+                    int sep = resumeToken.indexOf(':');
                     try {
-                        featureIterator = featureSource.getFeatures(query).features();
-                    } catch (IOException e) {
-                        logger.error("Error performing query: " + filterString, e);
-                        throw new QueryEvaluationException(e);
+                        skip = Long.parseLong(resumeToken.substring(0, sep));
+                        skipToId = resumeToken.substring(sep + 1);
+                    } catch (RuntimeException e) {
+                        throw new QueryEvaluationException("Not a valid resume token: " + resumeToken);
                     }
+                }
 
+                Query query = new Query(featureType.getTypeName(), filter);
+                if (limit > 0 && featureFilter == null && statementFilter == null) {
+                    // fetch one extra feature to find out if there is another page
+                    query.setMaxFeatures((int) Math.min(Integer.MAX_VALUE, skip + limit + 1));
                 }
-                return featureIterator;
+                scanStart = System.nanoTime();
+                try {
+                    featureIterator = featureSource.getFeatures(query).features();
+                } catch (IOException e) {
+                    logger.error("Error performing query: " + description, e);
+                    throw new QueryEvaluationException(e);
+                }
+
+                skip(skip, skipToId);
             }
+            return featureIterator;
+        }
 
-            @Override
-            public boolean hasNext() throws QueryEvaluationException {
-                return getIterator().hasNext();
+        private void skip(long skip, String skipToId) throws QueryEvaluationException {
+            String id = null;
+            while (position < skip) {
+                if (!featureIterator.hasNext()) {
+                    throw new QueryEvaluationException("Resume token is past the end of the results: " + resumeToken);
+                }
+                id = featureIterator.next().getID();
+                position++;
             }
+            if (skip > 0 && !skipToId.equals(id)) {
+                throw new QueryEvaluationException("Resume token does not match the order of the results: " + resumeToken);
+            }
+        }
 
-            @Override
-            public Statement next() throws QueryEvaluationException {
-                SimpleFeature feature = (SimpleFeature) getIterator().next();
-                String subjectString = feature.getAttribute(SUBJECT_ATTRIBUTE).toString();
-                String predicateString = feature.getAttribute(PREDICATE_ATTRIBUTE).toString();
-                String objectString = feature.getAttribute(OBJECT_ATTRIBUTE).toString();
-                String contextString = feature.getAttribute(CONTEXT_ATTRIBUTE).toString();
-                Statement statement = StatementSerializer.readStatement(subjectString, predicateString, objectString, contextString);
-                return statement;
+        /**
+         * Read ahead to the next statement that passes the feature and statement filters.
+         *
+         * @return false if there are no more statements
+         */
+        private boolean advance() throws QueryEvaluationException {
+            if (nextStatement != null) {
+                return true;
+            }
+            FeatureIterator<SimpleFeature> iterator = getIterator();
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                position++;
+                if (featureFilter != null && !featureFilter.apply(feature)) {
+                    continue;
+                }
+                Statement statement = readStatement(feature);
+                if (statementFilter == null || statementFilter.apply(statement)) {
+                    nextStatement = statement;
+                    nextFeatureId = feature.getID();
+                    nextPosition = position;
+                    if (firstResultNanos < 0) {
+                        firstResultNanos = System.nanoTime() - scanStart;
+                    }
+                    return true;
+                }
+            }
+            recordMetrics();
+            return false;
+        }
+
+        /**
+         * Record the query metrics once, when the results run out or the iteration is closed. A query closed before it was read is
+         * recorded with no scan time and no results.
+         */
+        private void recordMetrics() {
+            if (!recorded) {
+                recorded = true;
+                long scanNanos = featureIterator == null ? 0 : System.nanoTime() - scanStart;
+                metrics.updateQuery(operation, firstResultNanos, scanNanos, returned);
             }
+        }
 
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException("Remove not implemented");
+        private boolean isPageFull() {
+            return limit > 0 && returned >= limit;
+        }
+
+        @Override
+        public boolean hasNext() throws QueryEvaluationException {
+            return !isPageFull() && advance();
+        }
+
+        @Override
+        public Statement next() throws QueryEvaluationException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            Statement statement = nextStatement;
+            nextStatement = null;
+            returned++;
+            lastReturnedPosition = nextPosition;
+            lastReturnedFeatureId = nextFeatureId;
+            return statement;
+        }
 
-            @Override
-            public void close() throws QueryEvaluationException {
-                getIterator().close();
+        @Override
+        public String getResumeToken() throws QueryEvaluationException {
+            if (!isPageFull() || !advance()) {
+                return null;
             }
-        };
+            return lastReturnedPosition + ":" + lastReturnedFeatureId;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove not implemented");
+        }
+
+        @Override
+        public void close() throws QueryEvaluationException {
+            // an iteration that was never read has no scan to close, and must not open one just to skip to its resume token
+            if (featureIterator != null) {
+                featureIterator.close();
+            }
+            recordMetrics();
+        }
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryEquals(Geometry query) {
-        return performQuery("EQUALS", query);
+        return performQuery(GeoConstants.GEO_SF_EQUALS, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_EQUALS, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_EQUALS, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryEquals(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_EQUALS, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query) {
-        return performQuery("DISJOINT", query);
+        return performQuery(GeoConstants.GEO_SF_DISJOINT, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_DISJOINT, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_DISJOINT, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryDisjoint(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_DISJOINT, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query) {
-        return performQuery("INTERSECTS", query);
+        return performQuery(GeoConstants.GEO_SF_INTERSECTS, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_INTERSECTS, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_INTERSECTS, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryIntersects(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_INTERSECTS, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryTouches(Geometry query) {
-        return performQuery("TOUCHES", query);
+        return performQuery(GeoConstants.GEO_SF_TOUCHES, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_TOUCHES, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_TOUCHES, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryTouches(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_TOUCHES, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query) {
-        return performQuery("CROSSES", query);
+        return performQuery(GeoConstants.GEO_SF_CROSSES, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_CROSSES, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_CROSSES, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryCrosses(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_CROSSES, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryWithin(Geometry query) {
-        return performQuery("WITHIN", query);
+        return performQuery(GeoConstants.GEO_SF_WITHIN, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_WITHIN, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_WITHIN, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryWithin(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_WITHIN, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryContains(Geometry query) {
-        return performQuery("CONTAINS", query);
+        return performQuery(GeoConstants.GEO_SF_CONTAINS, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryContains(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_CONTAINS, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryContains(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_CONTAINS, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryContains(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_CONTAINS, query, contraints, limit, resumeToken);
     }
 
     @Override
     public CloseableIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query) {
-        return performQuery("OVERLAPS", query);
+        return performQuery(GeoConstants.GEO_SF_OVERLAPS, query, null, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, int limit, String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_OVERLAPS, query, null, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, StatementContraints contraints) {
+        return performQuery(GeoConstants.GEO_SF_OVERLAPS, query, contraints, 0, null);
+    }
+
+    @Override
+    public PagedIteration<Statement, QueryEvaluationException> queryOverlaps(Geometry query, StatementContraints contraints, int limit,
+            String resumeToken) {
+        return performQuery(GeoConstants.GEO_SF_OVERLAPS, query, contraints, limit, resumeToken);
+    }
+
+    @Override
+    public CloseableIteration<GeoBatchMatch, QueryEvaluationException> queryBatch(final URI function, final List<Geometry> queries,
+            final StatementContraints contraints) {
+        return new DeferredIteration<GeoBatchMatch>() {
+            @Override
+            protected List<GeoBatchMatch> evaluate() throws QueryEvaluationException {
+                if (queries.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                long start = System.nanoTime();
+                List<GeoBatchMatch> matches = performBatchQuery(function, queries, contraints);
+                long nanos = System.nanoTime() - start;
+                metrics.updateQuery("batch", nanos, nanos, matches.size());
+                return matches;
+            }
+        };
+    }
+
+    /**
+     * Run the scans of a batch query in parallel and merge their matches by feature.
+     */
+    private List<GeoBatchMatch> performBatchQuery(final URI function, final List<Geometry> queries, StatementContraints contraints)
+            throws QueryEvaluationException {
+        List<Filter> constraintFilters = new ArrayList<Filter>();
+        Predicate<Statement> statementFilter = addConstraints(constraintFilters, contraints);
+
+        // every query is matched exactly on the client, so each scan only needs the candidates in the bounding box of its queries. A
+        // disjoint match can be anywhere, so disjoint queries share one full scan.
+        List<Callable<Map<String, GeoBatchMatch>>> scans = new ArrayList<Callable<Map<String, GeoBatchMatch>>>();
+        final boolean disjoint = GeoConstants.GEO_SF_DISJOINT.equals(function);
+        if (disjoint) {
+            List<Integer> all = new ArrayList<Integer>();
+            for (int i = 0; i < queries.size(); i++) {
+                all.add(i);
+            }
+            scans.add(createBatchScan(function, queries, all, andFilters(constraintFilters, null), statementFilter, disjoint));
+        } else {
+            List<Envelope> envelopes = new ArrayList<Envelope>(queries.size());
+            for (Geometry query : queries) {
+                envelopes.add(query.getEnvelopeInternal());
+            }
+            for (QueryEnvelopeMerger.Region region : QueryEnvelopeMerger.merge(envelopes)) {
+                Filter filter = andFilters(constraintFilters, createBoundingBoxFilter(region.getEnvelope()));
+                scans.add(createBatchScan(function, queries, region.getQueryIndexes(), filter, statementFilter, disjoint));
+            }
+        }
+        logger.info("Performing geomesa batch query : " + function.getLocalName() + " of " + queries.size() + " geometries in "
+                + scans.size() + " scans");
+
+        Map<String, GeoBatchMatch> matches = new LinkedHashMap<String, GeoBatchMatch>();
+        try {
+            for (Future<Map<String, GeoBatchMatch>> scan : batchQueryExecutor.invokeAll(scans)) {
+                // a feature in the bounding box of several regions is found by each of their scans
+                for (Map.Entry<String, GeoBatchMatch> entry : scan.get().entrySet()) {
+                    GeoBatchMatch match = matches.get(entry.getKey());
+                    if (match == null) {
+                        matches.put(entry.getKey(), entry.getValue());
+                    } else {
+                        match.addQueryIndexes(entry.getValue().getQueryIndexes());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryEvaluationException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryEvaluationException) {
+                throw (QueryEvaluationException) e.getCause();
+            }
+            throw new QueryEvaluationException(e.getCause());
+        }
+        return new ArrayList<GeoBatchMatch>(matches.values());
+    }
+
+    private static Filter andFilters(List<Filter> filters, Filter filter) {
+        List<Filter> all = new ArrayList<Filter>(filters);
+        if (filter != null) {
+            all.add(filter);
+        }
+        if (all.isEmpty()) {
+            return Filter.INCLUDE;
+        }
+        return all.size() == 1 ? all.get(0) : FILTER_FACTORY.and(all);
+    }
+
+    private Callable<Map<String, GeoBatchMatch>> createBatchScan(final URI function, final List<Geometry> queries,
+            final List<Integer> queryIndexes, final Filter filter, final Predicate<Statement> statementFilter, final boolean disjoint) {
+        return new Callable<Map<String, GeoBatchMatch>>() {
+            @Override
+            public Map<String, GeoBatchMatch> call() throws QueryEvaluationException {
+                return batchScan(function, queries, queryIndexes, filter, statementFilter, disjoint);
+            }
+        };
+    }
+
+    private Map<String, GeoBatchMatch> batchScan(URI function, List<Geometry> queries, List<Integer> queryIndexes, Filter filter,
+            Predicate<Statement> statementFilter, boolean disjoint) throws QueryEvaluationException {
+        // prepared geometries are not thread safe, so each scan prepares its own queries
+        List<Integer> allIndexes = new ArrayList<Integer>(queryIndexes);
+        Map<Integer, PreparedGeometryFilter> refiners = new HashMap<Integer, PreparedGeometryFilter>();
+        STRtree index = new STRtree();
+        for (Integer i : queryIndexes) {
+            refiners.put(i, new PreparedGeometryFilter(function, queries.get(i)));
+            index.insert(queries.get(i).getEnvelopeInternal(), i);
+        }
+
+        Map<String, GeoBatchMatch> matches = new HashMap<String, GeoBatchMatch>();
+        FeatureIterator<SimpleFeature> features;
+        try {
+            features = featureSource.getFeatures(new Query(featureType.getTypeName(), filter)).features();
+        } catch (IOException e) {
+            logger.error("Error performing batch query scan: " + filter, e);
+            throw new QueryEvaluationException(e);
+        }
+        try {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry == null) {
+                    continue;
+                }
+                // only queries whose envelope intersects the feature can match it, except for disjoint queries
+                @SuppressWarnings("unchecked")
+                List<Integer> candidates = disjoint ? allIndexes : index.query(geometry.getEnvelopeInternal());
+                List<Integer> matched = new ArrayList<Integer>();
+                for (Integer i : candidates) {
+                    if (refiners.get(i).matches(geometry)) {
+                        matched.add(i);
+                    }
+                }
+                if (matched.isEmpty()) {
+                    continue;
+                }
+                Statement statement = readStatement(feature);
+                if (statementFilter == null || statementFilter.apply(statement)) {
+                    matches.put(feature.getID(), new GeoBatchMatch(statement, matched));
+                }
+            }
+        } finally {
+            features.close();
+        }
+        return matches;
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryDWithin(Geometry query, final double distance,
+            StatementContraints contraints) {
+        final Geometry queryGeometry = query;
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(createBoundingBoxFilter(GeodesicDistance.expand(query.getEnvelopeInternal(), distance)));
+        Predicate<Statement> statementFilter = addConstraints(filters, contraints);
+        Predicate<SimpleFeature> featureFilter = new Predicate<SimpleFeature>() {
+            @Override
+            public boolean apply(SimpleFeature feature) {
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                return geometry != null && GeodesicDistance.distance(queryGeometry, geometry) <= distance;
+            }
+        };
+
+        String description = describeQuery("dWithin", query, distance + "m", contraints);
+        logger.info("Performing geomesa query : " + description);
+        return new FeatureStatementIteration("dWithin", andFilters(filters, null), description, featureFilter, statementFilter, 0, null);
+    }
+
+    @Override
+    public CloseableIteration<Statement, QueryEvaluationException> queryNearest(final Point query, final int k,
+            final StatementContraints contraints) {
+        return new DeferredIteration<Statement>() {
+            @Override
+            protected List<Statement> evaluate() throws QueryEvaluationException {
+                long start = System.nanoTime();
+                List<Statement> neighbors = performNearestQuery(query, k, contraints);
+                long nanos = System.nanoTime() - start;
+                metrics.updateQuery("nearest", nanos, nanos, neighbors.size());
+                return neighbors;
+            }
+        };
+    }
+
+    /**
+     * A feature found by a nearest neighbor search, and its distance from the query point.
+     */
+    private static class Neighbor {
+        private final SimpleFeature feature;
+        private final Statement statement;
+        private final double distance;
+
+        Neighbor(SimpleFeature feature, Statement statement, double distance) {
+            this.feature = feature;
+            this.statement = statement;
+            this.distance = distance;
+        }
+    }
+
+    private static final Comparator<Neighbor> FURTHEST_FIRST = new Comparator<Neighbor>() {
+        @Override
+        public int compare(Neighbor n1, Neighbor n2) {
+            return Double.compare(n2.distance, n1.distance);
+        }
+    };
+
+    /**
+     * Search for the k nearest features in widening rings around the point. Each round scans only the ring between the previous search
+     * box and a box at least <code>radius</code> meters from the point, keeping the k nearest features seen so far in a bounded
+     * priority queue. Every feature outside the box is at least <code>radius</code> meters away, so the search stops as soon as the k-th
+     * nearest distance is within the radius. Once k features are known, the next radius is their k-th distance, so the last round is
+     * never larger than it needs to be.
+     */
+    private List<Statement> performNearestQuery(Point query, int k, StatementContraints contraints) throws QueryEvaluationException {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        List<Filter> constraintFilters = new ArrayList<Filter>();
+        Predicate<Statement> statementFilter = addConstraints(constraintFilters, contraints);
+
+        // k may be huge to mean all features, so let the queue grow rather than sizing it to k
+        PriorityQueue<Neighbor> nearest = new PriorityQueue<Neighbor>(Math.min(k, NEAREST_INITIAL_CAPACITY), FURTHEST_FIRST);
+        Set<String> seen = new HashSet<String>();
+        Envelope searched = null;
+        double radius = nearestInitialRadius;
+        int rounds = 0;
+        while (true) {
+            Envelope box = GeodesicDistance.expand(query.getEnvelopeInternal(), radius);
+            List<Filter> filters = new ArrayList<Filter>(constraintFilters);
+            filters.add(createBoundingBoxFilter(box));
+            if (searched != null) {
+                // features that reach into the previous box have already been seen
+                filters.add(FILTER_FACTORY.not(createBoundingBoxFilter(searched)));
+            }
+            scanNearest(query, k, andFilters(filters, null), statementFilter, nearest, seen);
+            rounds++;
+
+            boolean full = nearest.size() >= k;
+            if ((full && nearest.peek().distance <= radius) || GeodesicDistance.isWorld(box)) {
+                break;
+            }
+            searched = box;
+            radius = full ? nearest.peek().distance : radius * NEAREST_RADIUS_GROWTH;
+        }
+        logger.info("Performed geomesa nearest query : " + k + " nearest to " + query + " in " + rounds + " rounds");
+
+        List<Neighbor> neighbors = new ArrayList<Neighbor>(nearest);
+        Collections.sort(neighbors, Collections.reverseOrder(FURTHEST_FIRST));
+        List<Statement> statements = new ArrayList<Statement>(neighbors.size());
+        for (Neighbor neighbor : neighbors) {
+            statements.add(neighbor.statement != null ? neighbor.statement : readStatement(neighbor.feature));
+        }
+        return statements;
+    }
+
+    private void scanNearest(Point query, int k, Filter filter, Predicate<Statement> statementFilter, PriorityQueue<Neighbor> nearest,
+            Set<String> seen) throws QueryEvaluationException {
+        FeatureIterator<SimpleFeature> features;
+        try {
+            features = featureSource.getFeatures(new Query(featureType.getTypeName(), filter)).features();
+        } catch (IOException e) {
+            logger.error("Error performing nearest query scan: " + filter, e);
+            throw new QueryEvaluationException(e);
+        }
+        try {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry == null || !seen.add(feature.getID())) {
+                    continue;
+                }
+                double distance = GeodesicDistance.distance(query, geometry);
+                if (nearest.size() >= k && distance >= nearest.peek().distance) {
+                    continue;
+                }
+                Statement statement = null;
+                if (statementFilter != null) {
+                    statement = readStatement(feature);
+                    if (!statementFilter.apply(statement)) {
+                        continue;
+                    }
+                }
+                nearest.add(new Neighbor(feature, statement, distance));
+                if (nearest.size() > k) {
+                    nearest.poll();
+                }
+            }
+        } finally {
+            features.close();
+        }
+    }
+
+    /**
+     * An iteration over results that are computed all at once, on the first call.
+     */
+    private abstract static class DeferredIteration<E> implements CloseableIteration<E, QueryEvaluationException> {
+        private Iterator<E> iterator = null;
+
+        protected abstract List<E> evaluate() throws QueryEvaluationException;
+
+        private Iterator<E> getIterator() throws QueryEvaluationException {
+            if (iterator == null) {
+                iterator = evaluate().iterator();
+            }
+            return iterator;
+        }
+
+        @Override
+        public boolean hasNext() throws QueryEvaluationException {
+            return getIterator().hasNext();
+        }
+
+        @Override
+        public E next() throws QueryEvaluationException {
+            return getIterator().next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove not implemented");
+        }
+
+        @Override
+        public void close() {
+            iterator = Collections.<E> emptyList().iterator();
+        }
     }
 
     @Override
@@ -353,14 +1530,44 @@ public class GeoMesaGeoIndexer implements GeoIndexer {
         return validPredicates;
     }
 
+    /**
+     * @return the number of statements whose literal could not be parsed as a geometry since this indexer was created
+     */
+    public long getRejectedStatementCount() {
+        return metrics.getCount(GeoIndexerMetrics.STATEMENTS_REJECTED);
+    }
+
+    /**
+     * @return the metrics of this indexer
+     */
+    public GeoIndexerMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void flush() throws IOException {
-        // TODO cache and flush features instead of writing them one at a time
+        if (ingester != null) {
+            ingester.flush();
+        } else {
+            writeBuffer.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        flush();
+        try {
+            if (ingester != null) {
+                ingester.close();
+            }
+        } finally {
+            batchQueryExecutor.shutdown();
+            try {
+                writeBuffer.close();
+            } finally {
+                metrics.unregister();
+                dataStoreLease.release();
+            }
+        }
     }
 
 }
@@ -0,0 +1,30 @@
+
+/**
+ * Receives the metrics of a {@link GeoMesaGeoIndexer}, so that they can be forwarded to an existing monitoring system. An implementation
+ * is named by {@link ConfigUtils#GEO_METRICS_REGISTRY}; it needs a public no argument constructor, and receives the configuration if it is
+ * {@link org.apache.hadoop.conf.Configurable}. Implementations are called from ingest and query threads at the same time.
+ * <p>
+ * The metrics are described by {@link GeoIndexerMetrics}.
+ */
+public interface GeoMetricsRegistry {
+
+    /**
+     * Add to a counter.
+     *
+     * @param name
+     *            the metric name
+     * @param delta
+     *            the amount to add
+     */
+    public void increment(String name, long delta);
+
+    /**
+     * Add a value to a histogram, such as a duration in nanoseconds or a batch size.
+     *
+     * @param name
+     *            the metric name
+     * @param value
+     *            the value
+     */
+    public void update(String name, long value);
+}
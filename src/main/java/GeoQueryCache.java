@@ -0,0 +1,328 @@
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * A cache of {@link GeoIndexer} query results, keyed by the query function, the normalized query geometry and the
+ * {@link StatementContraints}.
+ * <p>
+ * The cache is bounded by the estimated memory of the cached statements (evicting the least recently used entries first) and entries
+ * expire after a fixed time. Results with more than a maximum number of statements are never cached.
+ * <p>
+ * The envelope of every cached query is kept in a {@link Quadtree}. When features are written, only the entries whose query envelope
+ * intersects the envelope of a written feature are invalidated. Disjoint queries can be affected by a feature anywhere, so they are
+ * invalidated by every write.
+ */
+public class GeoQueryCache implements FeatureWriteBuffer.WriteListener {
+
+    private final Cache<Key, List<Statement>> cache;
+    private final int maxResults;
+
+    private final Quadtree regions = new Quadtree();
+    private final Set<Key> unboundedKeys = new HashSet<Key>();
+    private final Set<Key> registeredKeys = new HashSet<Key>();
+
+    // incremented by every invalidation, so that results read while features were being written are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maxBytes
+     *            the estimated memory available to cached statements
+     * @param maxResults
+     *            the largest result set to cache
+     * @param ttl
+     *            the time in milliseconds after which an entry expires
+     */
+    public GeoQueryCache(long maxBytes, int maxResults, long ttl) {
+        this.maxResults = maxResults;
+        this.cache = CacheBuilder.newBuilder() //
+                .maximumWeight(maxBytes) //
+                .weigher(new Weigher<Key, List<Statement>>() {
+                    @Override
+                    public int weigh(Key key, List<Statement> statements) {
+                        return estimateSize(key, statements);
+                    }
+                }) //
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS) //
+                .removalListener(new RemovalListener<Key, List<Statement>>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, List<Statement>> notification) {
+                        if (notification.getCause() != RemovalCause.REPLACED) {
+                            unregister(notification.getKey());
+                        }
+                    }
+                }) //
+                .build();
+    }
+
+    /**
+     * The identity of a query.
+     */
+    public static class Key {
+        private final URI function;
+        private final byte[] geometry;
+        private final StatementContraints contraints;
+        private final Envelope envelope;
+
+        public Key(URI function, Geometry geometry, StatementContraints contraints) {
+            Geometry normalized = (Geometry) geometry.clone();
+            normalized.normalize();
+
+            this.function = function;
+            this.geometry = new WKBWriter().write(normalized);
+            this.contraints = copy(contraints);
+            this.envelope = GeoConstants.GEO_SF_DISJOINT.equals(function) ? null : geometry.getEnvelopeInternal();
+        }
+
+        private static StatementContraints copy(StatementContraints contraints) {
+            if (contraints == null || contraints.isEmpty()) {
+                return null;
+            }
+            StatementContraints copy = new StatementContraints().setSubject(contraints.getSubject()).setContext(contraints.getContext())
+                    .setTimeInterval(contraints.getStartTime(), contraints.getEndTime());
+            if (contraints.hasPredicates()) {
+                copy.setPredicates(new HashSet<URI>(contraints.getPredicates()));
+            }
+            return copy;
+        }
+
+        /**
+         * @return the region in which a written feature can change the results, or null if it is unbounded
+         */
+        Envelope getEnvelope() {
+            return envelope;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return function.equals(other.function) && Arrays.equals(geometry, other.geometry) && Objects.equal(contraints, other.contraints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(function, Arrays.hashCode(geometry), contraints);
+        }
+    }
+
+    /**
+     * @param key
+     *            the query
+     * @return the cached results, or null if the query is not cached
+     */
+    public PagedIteration<Statement, QueryEvaluationException> get(Key key) {
+        List<Statement> statements = cache.getIfPresent(key);
+        if (statements == null) {
+            return null;
+        }
+        return new ListIteration(statements);
+    }
+
+    /**
+     * Wrap the results of a query that is not cached. If the wrapped iteration is consumed to the end, its results are added to the
+     * cache.
+     *
+     * @param key
+     *            the query
+     * @param results
+     *            the uncached results
+     * @return an iteration over the same results
+     */
+    public PagedIteration<Statement, QueryEvaluationException> cache(Key key, PagedIteration<Statement, QueryEvaluationException> results) {
+        return new CachingIteration(key, results, generation.get());
+    }
+
+    private void put(Key key, List<Statement> statements, long startGeneration) {
+        synchronized (regions) {
+            if (generation.get() != startGeneration) {
+                // features were written while the results were read
+                return;
+            }
+            if (registeredKeys.add(key)) {
+                if (key.getEnvelope() == null) {
+                    unboundedKeys.add(key);
+                } else {
+                    regions.insert(key.getEnvelope(), key);
+                }
+            }
+            cache.put(key, Collections.unmodifiableList(statements));
+        }
+    }
+
+    private void unregister(Key key) {
+        synchronized (regions) {
+            if (!registeredKeys.remove(key)) {
+                return;
+            }
+            if (key.getEnvelope() == null) {
+                unboundedKeys.remove(key);
+            } else {
+                regions.remove(key.getEnvelope(), key);
+            }
+        }
+    }
+
+    /**
+     * Invalidate the cached queries whose results may contain the features.
+     */
+    @Override
+    public void featuresWritten(Collection<SimpleFeature> features) {
+        synchronized (regions) {
+            List<Key> invalid = new ArrayList<Key>();
+            generation.incrementAndGet();
+            invalid.addAll(unboundedKeys);
+            for (SimpleFeature feature : features) {
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry == null) {
+                    continue;
+                }
+                Envelope featureEnvelope = geometry.getEnvelopeInternal();
+                for (Object candidate : regions.query(featureEnvelope)) {
+                    Key key = (Key) candidate;
+                    if (key.getEnvelope().intersects(featureEnvelope)) {
+                        invalid.add(key);
+                    }
+                }
+            }
+            cache.invalidateAll(invalid);
+        }
+    }
+
+    /**
+     * Remove every cached query.
+     */
+    public void invalidateAll() {
+        synchronized (regions) {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    private static int estimateSize(Key key, List<Statement> statements) {
+        long size = 64L + key.geometry.length;
+        for (Statement statement : statements) {
+            size += 64L + 2L * (statement.getSubject().stringValue().length() + statement.getPredicate().stringValue().length() //
+                    + statement.getObject().stringValue().length());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /**
+     * An iteration over cached results.
+     */
+    private static class ListIteration implements PagedIteration<Statement, QueryEvaluationException> {
+        private final Iterator<Statement> iterator;
+
+        ListIteration(List<Statement> statements) {
+            this.iterator = statements.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Statement next() {
+            return iterator.next();
+        }
+
+        @Override
+        public String getResumeToken() {
+            return null;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove not implemented");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Records the results of an uncached query as they are consumed, and caches them once the end is reached.
+     */
+    private class CachingIteration implements PagedIteration<Statement, QueryEvaluationException> {
+        private final Key key;
+        private final PagedIteration<Statement, QueryEvaluationException> delegate;
+        private final long startGeneration;
+        private List<Statement> statements = new ArrayList<Statement>();
+
+        CachingIteration(Key key, PagedIteration<Statement, QueryEvaluationException> delegate, long startGeneration) {
+            this.key = key;
+            this.delegate = delegate;
+            this.startGeneration = startGeneration;
+        }
+
+        @Override
+        public boolean hasNext() throws QueryEvaluationException {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && statements != null) {
+                put(key, statements, startGeneration);
+                statements = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Statement next() throws QueryEvaluationException {
+            Statement statement = delegate.next();
+            if (statements != null) {
+                if (statements.size() < maxResults) {
+                    statements.add(statement);
+                } else {
+                    // too large to cache
+                    statements = null;
+                }
+            }
+            return statement;
+        }
+
+        @Override
+        public String getResumeToken() throws QueryEvaluationException {
+            return delegate.getResumeToken();
+        }
+
+        @Override
+        public void remove() throws QueryEvaluationException {
+            delegate.remove();
+        }
+
+        @Override
+        public void close() throws QueryEvaluationException {
+            statements = null;
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * How a {@link GeoIndexer} query is evaluated: the filter handed to the GeoMesa datastore, the row ranges it scans across the shards, the
+ * filters applied on the client, and the iterators configured on the table. If the query was analyzed, it also holds what running it
+ * cost: the features the scan returned against the statements that matched, and the time spent in each phase.
+ */
+public class GeoQueryExplanation {
+    private final String description;
+    private final String filter;
+    private final List<String> clientFilters;
+    private final int shards;
+    private final long rowRanges;
+    private final Envelope rangeExtent;
+    private final List<String> tableIterators;
+
+    private boolean analyzed = false;
+    private long featuresScanned = 0;
+    private long results = 0;
+    private long planNanos = 0;
+    private long firstResultNanos = -1;
+    private long scanNanos = 0;
+    private long filterNanos = 0;
+
+    GeoQueryExplanation(String description, String filter, List<String> clientFilters, int shards, long rowRanges, Envelope rangeExtent,
+            List<String> tableIterators) {
+        this.description = description;
+        this.filter = filter;
+        this.clientFilters = Collections.unmodifiableList(new ArrayList<String>(clientFilters));
+        this.shards = shards;
+        this.rowRanges = rowRanges;
+        this.rangeExtent = rangeExtent;
+        this.tableIterators = Collections.unmodifiableList(new ArrayList<String>(tableIterators));
+    }
+
+    void setRuntimeStats(long featuresScanned, long results, long planNanos, long firstResultNanos, long scanNanos, long filterNanos) {
+        this.analyzed = true;
+        this.featuresScanned = featuresScanned;
+        this.results = results;
+        this.planNanos = planNanos;
+        this.firstResultNanos = firstResultNanos;
+        this.scanNanos = scanNanos;
+        this.filterNanos = filterNanos;
+    }
+
+    /**
+     * @return a summary of the query
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the filter evaluated by the datastore
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the filters applied to the features and statements returned by the datastore
+     */
+    public List<String> getClientFilters() {
+        return clientFilters;
+    }
+
+    /**
+     * @return the number of shards scanned
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the estimated number of row ranges scanned, over all shards
+     */
+    public long getRowRanges() {
+        return rowRanges;
+    }
+
+    /**
+     * @return the extent of the geohash cells covered by the row ranges
+     */
+    public Envelope getRangeExtent() {
+        return rangeExtent;
+    }
+
+    /**
+     * @return the iterators configured on the table, as <code>name: scopes</code>
+     */
+    public List<String> getTableIterators() {
+        return tableIterators;
+    }
+
+    /**
+     * @return true if the query was run and the runtime statistics are set
+     */
+    public boolean isAnalyzed() {
+        return analyzed;
+    }
+
+    /**
+     * @return the number of features the datastore returned
+     */
+    public long getFeaturesScanned() {
+        return featuresScanned;
+    }
+
+    /**
+     * @return the number of statements that passed every filter
+     */
+    public long getResults() {
+        return results;
+    }
+
+    public long getPlanNanos() {
+        return planNanos;
+    }
+
+    /**
+     * @return the time from the start of the scan to the first result, or -1 if there were no results
+     */
+    public long getFirstResultNanos() {
+        return firstResultNanos;
+    }
+
+    /**
+     * @return the time from the start of the scan to its end, including the client filters
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * @return the part of the scan time spent in the client filters and decoding statements
+     */
+    public long getFilterNanos() {
+        return filterNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Query: ").append(description).append('\n');
+        sb.append("  Datastore filter: ").append(filter).append('\n');
+        sb.append("  Row ranges: ").append(rowRanges).append(" over ").append(shards).append(" shards, covering ").append(rangeExtent)
+                .append('\n');
+        sb.append("  Client filters: ").append(clientFilters.isEmpty() ? "none" : clientFilters.toString()).append('\n');
+        sb.append("  Table iterators: ").append(tableIterators.isEmpty() ? "none" : tableIterators.toString());
+        if (analyzed) {
+            sb.append('\n');
+            sb.append("  Features scanned: ").append(featuresScanned).append(", results: ").append(results).append('\n');
+            sb.append(String.format("  Time: plan %.3f ms, first result %s, scan %.3f ms, of which client filters %.3f ms", planNanos / 1e6,
+                    firstResultNanos < 0 ? "none" : String.format("%.3f ms", firstResultNanos / 1e6), scanNanos / 1e6, filterNanos / 1e6));
+        }
+        return sb.toString();
+    }
+}
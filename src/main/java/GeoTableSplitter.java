@@ -0,0 +1,179 @@
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Splits the geo index table on the shard prefix of its rows, and optionally on the leading geohash characters within each shard, so
+ * that writes to a new table are spread over tablet servers from the start instead of waiting for Accumulo to split a single hot tablet.
+ * <p>
+ * The rows of the {@link GeoIndexSchema} layout start with <code>shard~featureName~geohash</code>, where the shard runs from zero up to
+ * and including the shard setting, zero padded to the number of digits in the setting. Splits that already exist are left alone, so
+ * splitting an existing table again only adds the missing splits.
+ * <p>
+ * The main method re-splits an existing table with the settings of a configuration file.
+ */
+public class GeoTableSplitter {
+    private static final Logger logger = Logger.getLogger(GeoTableSplitter.class);
+
+    private static final String GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final char SEPARATOR = '~';
+
+    /**
+     * Two characters already give 1024 splits per shard.
+     */
+    public static final int MAX_GEOHASH_CHARS = 2;
+
+    private final String featureName;
+    private final int shards;
+    private final int geohashChars;
+
+    /**
+     * @param featureName
+     *            the name of the feature type in the rows
+     * @param shards
+     *            the shard setting of the index schema, the highest shard number in the rows
+     * @param geohashChars
+     *            the number of leading geohash characters to split on within each shard, or zero to split only on shards
+     */
+    public GeoTableSplitter(String featureName, int shards, int geohashChars) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("The shard setting must be positive: " + shards);
+        }
+        if (geohashChars < 0 || geohashChars > MAX_GEOHASH_CHARS) {
+            throw new IllegalArgumentException("The geohash split characters must be between 0 and " + MAX_GEOHASH_CHARS + ": "
+                    + geohashChars);
+        }
+        this.featureName = featureName;
+        this.shards = shards;
+        this.geohashChars = geohashChars;
+    }
+
+    /**
+     * @return the splitter for the layout and {@link ConfigUtils#GEO_SPLIT_GEOHASH_CHARS} in the configuration
+     */
+    public static GeoTableSplitter fromConfiguration(String featureName, Configuration conf) {
+        GeoIndexSchema schema = GeoIndexSchema.fromConfiguration(featureName, conf);
+        int geohashChars = ConfigUtils.getGeoSplitGeohashChars(conf);
+        if (geohashChars > schema.getRowGeohashChars()) {
+            throw new IllegalArgumentException("Cannot split on " + geohashChars + " geohash characters when the row only holds "
+                    + schema.getRowGeohashChars());
+        }
+        return new GeoTableSplitter(featureName, schema.getShards(), geohashChars);
+    }
+
+    /**
+     * @return every split point, in order
+     */
+    public SortedSet<Text> getSplits() {
+        SortedSet<Text> splits = new TreeSet<Text>();
+        int width = Integer.toString(shards).length();
+        for (int shard = 0; shard <= shards; shard++) {
+            String shardPrefix = String.format("%0" + width + "d", shard);
+            if (shard > 0) {
+                splits.add(new Text(shardPrefix));
+            }
+            if (geohashChars > 0) {
+                addGeohashSplits(splits, shardPrefix + SEPARATOR + featureName + SEPARATOR, geohashChars);
+            }
+        }
+        return splits;
+    }
+
+    private static void addGeohashSplits(SortedSet<Text> splits, String prefix, int chars) {
+        for (int i = 0; i < GEOHASH_BASE32.length(); i++) {
+            String split = prefix + GEOHASH_BASE32.charAt(i);
+            if (chars == 1) {
+                splits.add(new Text(split));
+            } else {
+                addGeohashSplits(splits, split, chars - 1);
+            }
+        }
+    }
+
+    /**
+     * Add the missing splits to a table.
+     *
+     * @param connector
+     *            the connection
+     * @param tableName
+     *            the table to split
+     * @return the number of splits added
+     */
+    public int split(Connector connector, String tableName) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        SortedSet<Text> splits = getSplits();
+        Collection<Text> existing = connector.tableOperations().listSplits(tableName);
+        splits.removeAll(existing);
+        if (!splits.isEmpty()) {
+            connector.tableOperations().addSplits(tableName, splits);
+        }
+        logger.info("Added " + splits.size() + " splits to " + tableName + " (" + existing.size() + " already existed)");
+        return splits.size();
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption(OptionBuilder.withLongOpt("conf").hasArg().withArgName("file")
+                .withDescription("a Hadoop configuration file with the connection and geo index settings").create("c"));
+        options.addOption(OptionBuilder.withArgName("property=value").hasArgs(2).withValueSeparator()
+                .withDescription("set a configuration property").create("D"));
+        options.addOption(OptionBuilder.withLongOpt("table").hasArg().withArgName("table")
+                .withDescription("the table to split. Defaults to " + ConfigUtils.GEO_TABLENAME).create("t"));
+        options.addOption(OptionBuilder.withLongOpt("geohash").hasArg().withArgName("chars")
+                .withDescription("the number of geohash characters to split on. Defaults to " + ConfigUtils.GEO_SPLIT_GEOHASH_CHARS)
+                .create("g"));
+        options.addOption(new Option("h", "help", false, "print this message"));
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = createOptions();
+        CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (org.apache.commons.cli.ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("GeoTableSplitter", options);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption("h")) {
+            new HelpFormatter().printHelp("GeoTableSplitter", options);
+            return;
+        }
+
+        Configuration conf = new Configuration();
+        if (cmd.hasOption("c")) {
+            conf.addResource(new Path(cmd.getOptionValue("c")));
+        }
+        Properties properties = cmd.getOptionProperties("D");
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            conf.set(entry.getKey().toString(), entry.getValue().toString());
+        }
+        if (cmd.hasOption("g")) {
+            conf.set(ConfigUtils.GEO_SPLIT_GEOHASH_CHARS, cmd.getOptionValue("g"));
+        }
+        String tableName = cmd.getOptionValue("t", ConfigUtils.getGeoTablename(conf));
+
+        GeoTableSplitter splitter = GeoTableSplitter.fromConfiguration(GeoMesaGeoIndexer.FEATURE_NAME, conf);
+        int added = splitter.split(ConfigUtils.getConnector(conf), tableName);
+        System.out.println("Added " + added + " splits to " + tableName);
+    }
+}
@@ -0,0 +1,98 @@
+
+import org.geotools.referencing.GeodeticCalculator;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.operation.distance.DistanceOp;
+
+/**
+ * Geodesic distances in meters between geometries in WGS84 longitude/latitude (SRID 4326).
+ * <p>
+ * The distance between two geometries is the distance along the WGS84 ellipsoid between their closest points, where the closest points are
+ * found in longitude/latitude space. For the small, non-polar geometries typical of RDF data this is very close to the true geodesic
+ * distance. Geometries that cross the antimeridian are not handled.
+ */
+public class GeodesicDistance {
+
+    /**
+     * A lower bound on the length of a degree of latitude, and of a degree of longitude at the equator, so that envelopes built from it
+     * never fall short of the requested distance.
+     */
+    private static final double MIN_METERS_PER_DEGREE = 110000.0;
+
+    private static final ThreadLocal<GeodeticCalculator> CALCULATORS = new ThreadLocal<GeodeticCalculator>() {
+        @Override
+        protected GeodeticCalculator initialValue() {
+            return new GeodeticCalculator();
+        }
+    };
+
+    private GeodesicDistance() {
+    }
+
+    /**
+     * @return the geodesic distance in meters between the closest points of the geometries, or zero if they intersect
+     */
+    public static double distance(Geometry g1, Geometry g2) {
+        if (g1.intersects(g2)) {
+            return 0;
+        }
+        Coordinate[] closest = DistanceOp.nearestPoints(g1, g2);
+        return distance(closest[0], closest[1]);
+    }
+
+    /**
+     * @return the geodesic distance in meters between two longitude/latitude coordinates
+     */
+    public static double distance(Coordinate c1, Coordinate c2) {
+        GeodeticCalculator calculator = CALCULATORS.get();
+        calculator.setStartingGeographicPoint(clampLongitude(c1.x), clampLatitude(c1.y));
+        calculator.setDestinationGeographicPoint(clampLongitude(c2.x), clampLatitude(c2.y));
+        return calculator.getOrthodromicDistance();
+    }
+
+    /**
+     * Expand an envelope so that it contains every point within a distance of it. The result may be larger than necessary, but is never
+     * smaller.
+     *
+     * @param envelope
+     *            the envelope in degrees
+     * @param meters
+     *            the distance
+     * @return the expanded envelope, clamped to the valid longitude and latitude range
+     */
+    public static Envelope expand(Envelope envelope, double meters) {
+        double latDegrees = meters / MIN_METERS_PER_DEGREE;
+        double minY = Math.max(-90, envelope.getMinY() - latDegrees);
+        double maxY = Math.min(90, envelope.getMaxY() + latDegrees);
+
+        // a degree of longitude is shortest at the latitude furthest from the equator
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minY), Math.abs(maxY))));
+        double minX = -180;
+        double maxX = 180;
+        if (cos > 0) {
+            double lonDegrees = meters / (MIN_METERS_PER_DEGREE * cos);
+            if (lonDegrees < 180) {
+                minX = Math.max(-180, envelope.getMinX() - lonDegrees);
+                maxX = Math.min(180, envelope.getMaxX() + lonDegrees);
+            }
+        }
+        return new Envelope(minX, maxX, minY, maxY);
+    }
+
+    /**
+     * @return true if the envelope covers every longitude and latitude
+     */
+    public static boolean isWorld(Envelope envelope) {
+        return envelope.getMinX() <= -180 && envelope.getMaxX() >= 180 && envelope.getMinY() <= -90 && envelope.getMaxY() >= 90;
+    }
+
+    private static double clampLongitude(double x) {
+        return Math.max(-180, Math.min(180, x));
+    }
+
+    private static double clampLatitude(double y) {
+        return Math.max(-90, Math.min(90, y));
+    }
+}
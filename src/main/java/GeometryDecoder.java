@@ -0,0 +1,123 @@
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Decodes Well-Known Text into {@link Geometry}s with as little allocation as possible.
+ * <p>
+ * All geometries are created by a single shared SRID 4326 {@link GeometryFactory} backed by packed coordinate sequences. Simple 2D
+ * <code>POINT(x y)</code> literals are decoded by a scanner that does not tokenize; everything else is parsed by a {@link WKTReader} that
+ * is reused per thread.
+ */
+public class GeometryDecoder {
+    public static final int SRID = 4326;
+
+    public static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), SRID,
+            PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    private static final String POINT = "POINT";
+
+    private static final ThreadLocal<WKTReader> READERS = new ThreadLocal<WKTReader>() {
+        @Override
+        protected WKTReader initialValue() {
+            return new WKTReader(GEOMETRY_FACTORY);
+        }
+    };
+
+    /**
+     * Read a {@link Geometry} from Well-Known Text.
+     *
+     * @param wkt
+     *            the text to parse
+     * @return the geometry
+     * @throws ParseException
+     *             if the text is not valid Well-Known Text
+     */
+    public static Geometry read(String wkt) throws ParseException {
+        Point point = readPoint(wkt);
+        if (point != null) {
+            return point;
+        }
+        return READERS.get().read(wkt);
+    }
+
+    /**
+     * Decode a simple 2D point of the form <code>POINT(x y)</code> without tokenizing.
+     *
+     * @param wkt
+     *            the text to parse
+     * @return the point, or null if the text is not a simple 2D point and needs the general parser
+     */
+    static Point readPoint(String wkt) {
+        int length = wkt.length();
+        int i = skipWhitespace(wkt, 0);
+        if (!wkt.regionMatches(true, i, POINT, 0, POINT.length())) {
+            return null;
+        }
+        i = skipWhitespace(wkt, i + POINT.length());
+        if (i >= length || wkt.charAt(i) != '(') {
+            return null;
+        }
+
+        int xStart = skipWhitespace(wkt, i + 1);
+        int xEnd = scanNumber(wkt, xStart);
+        if (xEnd == xStart) {
+            return null;
+        }
+        int yStart = skipWhitespace(wkt, xEnd);
+        if (yStart == xEnd) {
+            return null;
+        }
+        int yEnd = scanNumber(wkt, yStart);
+        if (yEnd == yStart) {
+            return null;
+        }
+
+        i = skipWhitespace(wkt, yEnd);
+        if (i >= length || wkt.charAt(i) != ')') {
+            return null;
+        }
+        if (skipWhitespace(wkt, i + 1) != length) {
+            return null;
+        }
+
+        double[] coordinates = new double[2];
+        try {
+            coordinates[0] = Double.parseDouble(wkt.substring(xStart, xEnd));
+            coordinates[1] = Double.parseDouble(wkt.substring(yStart, yEnd));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return GEOMETRY_FACTORY.createPoint(new PackedCoordinateSequence.Double(coordinates, 2));
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        int length = s.length();
+        while (i < length && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the first character after the number starting at <code>i</code>
+     */
+    private static int scanNumber(String s, int i) {
+        int length = s.length();
+        while (i < length) {
+            char c = s.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,22 @@
+
+import info.aduna.iteration.CloseableIteration;
+
+/**
+ * A {@link CloseableIteration} over one page of query results.
+ * <p>
+ * Once the page has been consumed, {@link #getResumeToken()} returns an opaque token that can be passed back to the query method to fetch
+ * the next page.
+ *
+ * @param <E>
+ *            the element type
+ * @param <X>
+ *            the exception thrown by the iteration
+ */
+public interface PagedIteration<E, X extends Exception> extends CloseableIteration<E, X> {
+
+    /**
+     * @return the token to fetch the page that follows the elements returned so far, or null if there are no more results
+     * @throws X
+     */
+    public String getResumeToken() throws X;
+}
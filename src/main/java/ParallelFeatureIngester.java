@@ -0,0 +1,252 @@
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.Statement;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A multi-threaded ingest pipeline. Statements are split into batches, converted to features on a pool of worker threads, and handed
+ * through a bounded queue to a single writer thread that feeds a {@link FeatureWriteBuffer}.
+ * <p>
+ * Both stages are bounded. When the writer falls behind, workers block on the feature queue; when the workers fall behind, the work queue
+ * fills up and callers of {@link #submit(Collection)} convert their own batches, which slows them down to the pace of the pipeline.
+ * <p>
+ * Submission is asynchronous: {@link #flush()} waits for all submitted statements to reach the write buffer and then flushes it. Errors
+ * raised by either stage are rethrown by the next call to {@link #submit(Collection)} or {@link #flush()}.
+ */
+public class ParallelFeatureIngester implements Flushable, Closeable {
+    private static final Logger logger = Logger.getLogger(ParallelFeatureIngester.class);
+
+    private final Function<Collection<Statement>, List<SimpleFeature>> featureBuilder;
+    private final FeatureWriteBuffer writeBuffer;
+    private final int batchSize;
+
+    private final ThreadPoolExecutor workers;
+    private final BlockingQueue<List<SimpleFeature>> featureQueue;
+    private final Thread writer;
+
+    private final Object pendingLock = new Object();
+    private long pendingBatches = 0;
+    private Throwable failure = null;
+
+    /**
+     * @param featureBuilder
+     *            converts a batch of statements to features, skipping statements that should not be indexed
+     * @param writeBuffer
+     *            the buffer that the writer stage feeds
+     * @param numThreads
+     *            the number of worker threads
+     * @param queueSize
+     *            the number of converted batches that may wait for the writer
+     * @param batchSize
+     *            the number of statements converted by a worker in one unit of work
+     */
+    public ParallelFeatureIngester(Function<Collection<Statement>, List<SimpleFeature>> featureBuilder, FeatureWriteBuffer writeBuffer,
+            int numThreads, int queueSize, int batchSize) {
+        this.featureBuilder = featureBuilder;
+        this.writeBuffer = writeBuffer;
+        this.batchSize = batchSize;
+
+        featureQueue = new ArrayBlockingQueue<List<SimpleFeature>>(queueSize);
+        workers = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(numThreads),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("geo-ingest-worker-%d").build(),
+                new CallerRunsUnlessShutdown());
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "geo-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Submit statements to the pipeline. This method returns once the statements have been queued for conversion, or converted on the
+     * caller's thread if the workers are saturated.
+     *
+     * @param statements
+     *            the statements to ingest
+     * @throws IOException
+     *             if an earlier batch failed, or the pipeline is closed
+     */
+    public void submit(Collection<Statement> statements) throws IOException {
+        submit(statements, featureBuilder);
+    }
+
+    /**
+     * Submit statements to the pipeline, converting them with a different function than the one the pipeline was created with, such as
+     * one that carries state collected from all the statements before they are split into batches.
+     *
+     * @param statements
+     *            the statements to ingest
+     * @param builder
+     *            converts each batch of these statements to features
+     * @throws IOException
+     *             if an earlier batch failed, or the pipeline is closed
+     */
+    public void submit(Collection<Statement> statements, Function<Collection<Statement>, List<SimpleFeature>> builder)
+            throws IOException {
+        checkFailure();
+
+        List<Statement> batch = new ArrayList<Statement>(Math.min(batchSize, statements.size()));
+        for (Statement statement : statements) {
+            batch.add(statement);
+            if (batch.size() >= batchSize) {
+                submitBatch(batch, builder);
+                batch = new ArrayList<Statement>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submitBatch(batch, builder);
+        }
+    }
+
+    private void submitBatch(final List<Statement> batch, final Function<Collection<Statement>, List<SimpleFeature>> builder)
+            throws IOException {
+        synchronized (pendingLock) {
+            pendingBatches++;
+        }
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    convert(batch, builder);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (pendingLock) {
+                pendingBatches--;
+                pendingLock.notifyAll();
+            }
+            throw new IOException("The ingest pipeline is closed", e);
+        }
+    }
+
+    /**
+     * Runs a rejected batch on the caller's thread while the pool is open, and rejects it once the pool is shut down, where
+     * {@link ThreadPoolExecutor.CallerRunsPolicy} would silently drop it and leave it pending forever.
+     */
+    private static class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Ingest workers are shut down");
+            }
+            r.run();
+        }
+    }
+
+    private void convert(List<Statement> batch, Function<Collection<Statement>, List<SimpleFeature>> builder) {
+        try {
+            List<SimpleFeature> features = builder.apply(batch);
+            featureQueue.put(features);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batchFailed(e);
+        } catch (Throwable e) {
+            // errors too, or the batch stays pending and flush() never returns
+            batchFailed(e);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<SimpleFeature> features;
+            try {
+                features = featureQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                if (!features.isEmpty()) {
+                    writeBuffer.addAll(features);
+                }
+                batchDone();
+            } catch (Throwable e) {
+                // keep draining the queue, or the workers block and flush() never returns
+                batchFailed(e);
+            }
+        }
+    }
+
+    private void batchDone() {
+        synchronized (pendingLock) {
+            pendingBatches--;
+            pendingLock.notifyAll();
+        }
+    }
+
+    private void batchFailed(Throwable e) {
+        logger.error("Error ingesting statements", e);
+        synchronized (pendingLock) {
+            if (failure == null) {
+                failure = e;
+            }
+            pendingBatches--;
+            pendingLock.notifyAll();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable e;
+        synchronized (pendingLock) {
+            e = failure;
+            failure = null;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException("Error ingesting statements", e);
+        }
+    }
+
+    /**
+     * Wait for all submitted statements to reach the write buffer, then flush the buffer.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (pendingLock) {
+            while (pendingBatches > 0) {
+                try {
+                    pendingLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for ingest to complete", e);
+                }
+            }
+        }
+        checkFailure();
+        writeBuffer.flush();
+    }
+
+    /**
+     * Flush all pending statements and stop the worker and writer threads. The write buffer is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            workers.shutdownNow();
+            writer.interrupt();
+        }
+    }
+}
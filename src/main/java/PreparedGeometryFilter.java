@@ -0,0 +1,61 @@
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.URI;
+
+import com.google.common.base.Predicate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * The exact second phase of a two-phase spatial query. The query geometry is prepared once, and each candidate feature returned by the
+ * coarse first phase is tested against it with the DE-9IM relationship of a GeoSPARQL Simple Features function.
+ * <p>
+ * The functions are evaluated as <code>function(featureGeometry, queryGeometry)</code>, so for example
+ * {@link GeoConstants#GEO_SF_WITHIN} keeps the features that lie within the query geometry.
+ */
+public class PreparedGeometryFilter implements Predicate<SimpleFeature> {
+    private final URI function;
+    private final Geometry query;
+    private final PreparedGeometry prepared;
+
+    public PreparedGeometryFilter(URI function, Geometry query) {
+        this.function = function;
+        this.query = query;
+        this.prepared = PreparedGeometryFactory.prepare(query);
+    }
+
+    @Override
+    public boolean apply(SimpleFeature feature) {
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        return geometry != null && matches(geometry);
+    }
+
+    /**
+     * @param geometry
+     *            the geometry of a candidate feature
+     * @return true if the function holds between the candidate and the query geometry
+     */
+    public boolean matches(Geometry geometry) {
+        if (GeoConstants.GEO_SF_EQUALS.equals(function)) {
+            return query.equals(geometry);
+        } else if (GeoConstants.GEO_SF_DISJOINT.equals(function)) {
+            return prepared.disjoint(geometry);
+        } else if (GeoConstants.GEO_SF_INTERSECTS.equals(function)) {
+            return prepared.intersects(geometry);
+        } else if (GeoConstants.GEO_SF_TOUCHES.equals(function)) {
+            return prepared.touches(geometry);
+        } else if (GeoConstants.GEO_SF_CROSSES.equals(function)) {
+            return prepared.crosses(geometry);
+        } else if (GeoConstants.GEO_SF_WITHIN.equals(function)) {
+            // the feature is within the query
+            return prepared.contains(geometry);
+        } else if (GeoConstants.GEO_SF_CONTAINS.equals(function)) {
+            // the feature contains the query
+            return prepared.within(geometry);
+        } else if (GeoConstants.GEO_SF_OVERLAPS.equals(function)) {
+            return prepared.overlaps(geometry);
+        }
+        throw new IllegalArgumentException("Unsupported geo function: " + function);
+    }
+}
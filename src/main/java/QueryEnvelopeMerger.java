@@ -0,0 +1,89 @@
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Merges the envelopes of many query geometries into the smallest set of scan regions that cover them without scanning the same area
+ * twice. Envelopes that intersect are merged into one region (repeatedly, since a merged region can reach other envelopes); envelopes that
+ * do not intersect stay separate, so scattered queries do not grow into one region covering the empty space between them.
+ */
+public class QueryEnvelopeMerger {
+
+    /**
+     * A scan region and the queries it covers.
+     */
+    public static class Region {
+        private final Envelope envelope;
+        private final List<Integer> queryIndexes = new ArrayList<Integer>();
+
+        Region(Envelope envelope, int queryIndex) {
+            this.envelope = new Envelope(envelope);
+            this.queryIndexes.add(queryIndex);
+        }
+
+        private void merge(Region other) {
+            envelope.expandToInclude(other.envelope);
+            queryIndexes.addAll(other.queryIndexes);
+        }
+
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        /**
+         * @return the positions of the covered queries in the list passed to {@link QueryEnvelopeMerger#merge(List)}
+         */
+        public List<Integer> getQueryIndexes() {
+            return queryIndexes;
+        }
+    }
+
+    private static final Comparator<Region> BY_MIN_X = new Comparator<Region>() {
+        @Override
+        public int compare(Region r1, Region r2) {
+            return Double.compare(r1.envelope.getMinX(), r2.envelope.getMinX());
+        }
+    };
+
+    private QueryEnvelopeMerger() {
+    }
+
+    /**
+     * @param envelopes
+     *            the envelopes of the queries
+     * @return disjoint regions that together cover every envelope
+     */
+    public static List<Region> merge(List<Envelope> envelopes) {
+        List<Region> regions = new ArrayList<Region>(envelopes.size());
+        for (int i = 0; i < envelopes.size(); i++) {
+            regions.add(new Region(envelopes.get(i), i));
+        }
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            Collections.sort(regions, BY_MIN_X);
+            List<Region> result = new ArrayList<Region>(regions.size());
+            for (Region region : regions) {
+                Region target = null;
+                for (int i = result.size() - 1; i >= 0 && target == null; i--) {
+                    if (result.get(i).envelope.intersects(region.envelope)) {
+                        target = result.get(i);
+                    }
+                }
+                if (target == null) {
+                    result.add(region);
+                } else {
+                    target.merge(region);
+                    merged = true;
+                }
+            }
+            regions = result;
+        }
+        return regions;
+    }
+}
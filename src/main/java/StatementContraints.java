@@ -0,0 +1,126 @@
+
+import java.util.Date;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+
+import com.google.common.base.Objects;
+
+/**
+ * Constraints on the subject, predicate and context of the {@link Statement}s returned by a {@link GeoIndexer} query, and on the time
+ * indexed with them. An unset constraint matches every statement.
+ * <p>
+ * The time interval is not part of the statement itself, so it is not checked by {@link #matches(Statement)}. It only matches statements
+ * that were indexed with a time, see {@link ConfigUtils#GEO_TIME_ENABLED}.
+ */
+public class StatementContraints {
+    private Resource context = null;
+    private Resource subject = null;
+    private Set<URI> predicates = null;
+    private Date startTime = null;
+    private Date endTime = null;
+
+    public StatementContraints setContext(Resource context) {
+        this.context = context;
+        return this;
+    }
+
+    public StatementContraints setPredicates(Set<URI> predicates) {
+        this.predicates = predicates;
+        return this;
+    }
+
+    public StatementContraints setSubject(Resource subject) {
+        this.subject = subject;
+        return this;
+    }
+
+    /**
+     * @param startTime
+     *            the earliest indexed time, inclusive, or null for no lower bound
+     * @param endTime
+     *            the latest indexed time, inclusive, or null for no upper bound
+     */
+    public StatementContraints setTimeInterval(Date startTime, Date endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        return this;
+    }
+
+    public Resource getContext() {
+        return context;
+    }
+
+    public Set<URI> getPredicates() {
+        return predicates;
+    }
+
+    public Resource getSubject() {
+        return subject;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    public boolean hasSubject() {
+        return subject != null;
+    }
+
+    public boolean hasPredicates() {
+        return predicates != null && !predicates.isEmpty();
+    }
+
+    public boolean hasContext() {
+        return context != null;
+    }
+
+    public boolean hasTimeInterval() {
+        return startTime != null || endTime != null;
+    }
+
+    /**
+     * @return true if no constraint is set
+     */
+    public boolean isEmpty() {
+        return !hasSubject() && !hasPredicates() && !hasContext() && !hasTimeInterval();
+    }
+
+    /**
+     * @param statement
+     *            the statement to test
+     * @return true if the statement meets the subject, predicate and context constraints
+     */
+    public boolean matches(Statement statement) {
+        return (!hasSubject() || subject.equals(statement.getSubject()))
+                && (!hasPredicates() || predicates.contains(statement.getPredicate()))
+                && (!hasContext() || context.equals(statement.getContext()));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StatementContraints)) {
+            return false;
+        }
+        StatementContraints other = (StatementContraints) obj;
+        return Objects.equal(subject, other.subject) && Objects.equal(predicates, other.predicates) && Objects.equal(context, other.context)
+                && Objects.equal(startTime, other.startTime) && Objects.equal(endTime, other.endTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(subject, predicates, context, startTime, endTime);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).omitNullValues().add("subject", subject).add("predicates", predicates).add("context", context)
+                .add("startTime", startTime).add("endTime", endTime).toString();
+    }
+}
@@ -0,0 +1,75 @@
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openrdf.model.Statement;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Generates feature IDs for {@link Statement}s by hashing their serialized form.
+ * <p>
+ * The statement is serialized with {@link StatementSerializer#writeStatement(Statement, ByteBuffer)} into a reusable per-thread buffer and
+ * hashed from there, so no intermediate {@link String} or byte[] is built. The hash is Base64 encoded (URL safe, 22 chars for a 128 bit
+ * hash).
+ * <p>
+ * {@link #MD5} produces the same IDs as <code>Md5Hash.md5Base64(StatementSerializer.writeStatement(statement))</code> and must be used for
+ * existing tables. {@link #MURMUR3_128} is a much cheaper non-cryptographic 128 bit hash for new tables. Since the ID is used to
+ * de-duplicate statements, the hash must not be changed for a table that already holds data.
+ */
+public class StatementIdGenerator {
+    public static final String MD5 = "md5";
+    public static final String MURMUR3_128 = "murmur3";
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    };
+
+    private final HashFunction hashFunction;
+
+    public StatementIdGenerator(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * @param name
+     *            {@link #MD5} or {@link #MURMUR3_128}
+     * @return the generator for the named hash
+     */
+    public static StatementIdGenerator forName(String name) {
+        if (MD5.equalsIgnoreCase(name)) {
+            return new StatementIdGenerator(Hashing.md5());
+        } else if (MURMUR3_128.equalsIgnoreCase(name)) {
+            return new StatementIdGenerator(Hashing.murmur3_128());
+        }
+        throw new IllegalArgumentException("Unknown statement id hash: " + name);
+    }
+
+    /**
+     * @param statement
+     *            the statement to identify
+     * @return the Base64 encoded hash of the statement
+     */
+    public String createId(Statement statement) {
+        ByteBuffer buffer = BUFFERS.get();
+        while (true) {
+            buffer.clear();
+            try {
+                StatementSerializer.writeStatement(statement, buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                BUFFERS.set(buffer);
+            }
+        }
+        byte[] hash = hashFunction.hashBytes(buffer.array(), 0, buffer.position()).asBytes();
+        return Base64.encodeBase64URLSafeString(hash);
+    }
+}
@@ -1,9 +1,13 @@
-
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -14,35 +18,104 @@ import org.openrdf.model.impl.ContextStatementImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
 
+import com.google.common.base.Charsets;
+
 /**
  * A set of Utilities to serialize {@link Statement}s to/from {@link String}s.
+ * <p>
+ * The serialized form is <code>context SEP subject SEP predicate SEP object</code>, where each value is written in its
+ * {@link Object#toString()} form. Reading and writing scan the input by index and write into caller supplied buffers, so that the
+ * per-statement cost is limited to the {@link String}s of the resulting values.
  */
 public class StatementSerializer {
-    private static String SEP = "\u0000";
+    private static char SEP_CHAR = '\u0000';
 
     private static ValueFactory VALUE_FACTORY = new ValueFactoryImpl();
 
+    private static final ThreadLocal<CharsetDecoder> DECODERS = new ThreadLocal<CharsetDecoder>() {
+        @Override
+        protected CharsetDecoder initialValue() {
+            return Charsets.UTF_8.newDecoder();
+        }
+    };
+
     /**
      * Read a {@link Statement} from a {@link String}
-     * 
+     *
      * @param in
      *            the {@link String} to parse
      * @return a {@link Statement}
      */
     public static Statement readStatement(String in) throws IOException {
-        String[] parts = in.split(SEP);
+        int subjectStart = in.indexOf(SEP_CHAR) + 1;
+        int predicateStart = subjectStart == 0 ? 0 : in.indexOf(SEP_CHAR, subjectStart) + 1;
+        int objectStart = predicateStart == 0 ? 0 : in.indexOf(SEP_CHAR, predicateStart) + 1;
 
-        if (parts.length != 4) {
+        if (objectStart == 0 || objectStart == in.length() || in.indexOf(SEP_CHAR, objectStart) >= 0) {
             throw new IOException("Not a valid statement: " + in);
         }
 
-        String contextString = parts[0];
-        String subjectString = parts[1];
-        String predicateString = parts[2];
-        String objectString = parts[3];
+        String contextString = in.substring(0, subjectStart - 1);
+        String subjectString = in.substring(subjectStart, predicateStart - 1);
+        String predicateString = in.substring(predicateStart, objectStart - 1);
+        String objectString = in.substring(objectStart);
         return readStatement(subjectString, predicateString, objectString, contextString);
     }
 
+    /**
+     * Read a {@link Statement} from a range of a <code>char</code> buffer
+     *
+     * @param in
+     *            the buffer to parse
+     * @param offset
+     *            the start of the statement in the buffer
+     * @param length
+     *            the length of the statement
+     * @return a {@link Statement}
+     */
+    public static Statement readStatement(char[] in, int offset, int length) throws IOException {
+        int end = offset + length;
+        int[] starts = new int[4];
+        int part = 0;
+        starts[0] = offset;
+        for (int i = offset; i < end; i++) {
+            if (in[i] == SEP_CHAR) {
+                part++;
+                if (part > 3) {
+                    break;
+                }
+                starts[part] = i + 1;
+            }
+        }
+
+        if (part != 3 || starts[3] == end) {
+            throw new IOException("Not a valid statement: " + new String(in, offset, length));
+        }
+
+        String contextString = new String(in, starts[0], starts[1] - 1 - starts[0]);
+        String subjectString = new String(in, starts[1], starts[2] - 1 - starts[1]);
+        String predicateString = new String(in, starts[2], starts[3] - 1 - starts[2]);
+        String objectString = new String(in, starts[3], end - starts[3]);
+        return readStatement(subjectString, predicateString, objectString, contextString);
+    }
+
+    /**
+     * Read a {@link Statement} from the remaining UTF-8 encoded bytes of a {@link ByteBuffer}
+     *
+     * @param in
+     *            the buffer to parse
+     * @return a {@link Statement}
+     */
+    public static Statement readStatement(ByteBuffer in) throws IOException {
+        CharBuffer chars;
+        try {
+            chars = DECODERS.get().decode(in);
+        } catch (CharacterCodingException e) {
+            throw new IOException("Not a valid UTF-8 statement", e);
+        }
+        return readStatement(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+    }
+
     public static Statement readStatement(String subjectString, String predicateString, String objectString) {
         return readStatement(subjectString, predicateString, objectString, "");
     }
@@ -78,27 +151,25 @@ public class StatementSerializer {
 
     private static Literal parseLiteral(String fullLiteralString) {
         Validate.notNull(fullLiteralString);
-        Validate.isTrue(fullLiteralString.length() > 1);
+        int length = fullLiteralString.length();
+        Validate.isTrue(length > 1);
 
-        if (fullLiteralString.endsWith("\"")) {
-            String fullLiteralWithoutQuotes = fullLiteralString.substring(1, fullLiteralString.length() - 1);
-            return VALUE_FACTORY.createLiteral(fullLiteralWithoutQuotes, (String) null);
+        if (fullLiteralString.charAt(length - 1) == '"') {
+            return VALUE_FACTORY.createLiteral(fullLiteralString.substring(1, length - 1), (String) null);
         } else {
 
             // find the closing quote
-            int labelEnd = fullLiteralString.lastIndexOf("\"");
+            int labelEnd = fullLiteralString.lastIndexOf('"');
 
             String label = fullLiteralString.substring(1, labelEnd);
 
-            String data = fullLiteralString.substring(labelEnd + 1);
-
-            if (data.startsWith("@")) {
+            if (fullLiteralString.startsWith("@", labelEnd + 1)) {
                 // the data is "language"
-                String lang = data.substring(1);
+                String lang = fullLiteralString.substring(labelEnd + 2);
                 return VALUE_FACTORY.createLiteral(label, lang);
-            } else if (data.startsWith("^^<")) {
+            } else if (fullLiteralString.startsWith("^^<", labelEnd + 1)) {
                 // the data is a "datatype"
-                String datatype = data.substring(3, data.length() - 1);
+                String datatype = fullLiteralString.substring(labelEnd + 4, length - 1);
                 URI datatypeUri = VALUE_FACTORY.createURI(datatype);
                 return VALUE_FACTORY.createLiteral(label, datatypeUri);
             }
@@ -128,12 +199,57 @@ public class StatementSerializer {
 
     /**
      * Write a {@link Statement} to a {@link String}
-     * 
+     *
      * @param statement
      *            the {@link Statement} to write
      * @return a {@link String} representation of the statement
      */
     public static String writeStatement(Statement statement) {
+        StringBuilder sb = new StringBuilder(estimateLength(statement));
+        writeStatement(statement, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Append the {@link String} representation of a {@link Statement} to a {@link StringBuilder}
+     *
+     * @param statement
+     *            the {@link Statement} to write
+     * @param out
+     *            the builder to append to
+     */
+    public static void writeStatement(Statement statement, StringBuilder out) {
+        Resource subject = statement.getSubject();
+        Resource context = statement.getContext();
+        URI predicate = statement.getPredicate();
+        Value object = statement.getObject();
+
+        Validate.notNull(subject);
+        Validate.notNull(predicate);
+        Validate.notNull(object);
+
+        if (context != null) {
+            writeValue(context, out);
+        }
+        out.append(SEP_CHAR);
+        writeValue(subject, out);
+        out.append(SEP_CHAR);
+        writeValue(predicate, out);
+        out.append(SEP_CHAR);
+        writeValue(object, out);
+    }
+
+    /**
+     * Write the UTF-8 encoded {@link String} representation of a {@link Statement} into a {@link ByteBuffer}
+     *
+     * @param statement
+     *            the {@link Statement} to write
+     * @param out
+     *            the buffer to write to, starting at its current position
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer is too small
+     */
+    public static void writeStatement(Statement statement, ByteBuffer out) {
         Resource subject = statement.getSubject();
         Resource context = statement.getContext();
         URI predicate = statement.getPredicate();
@@ -143,15 +259,102 @@ public class StatementSerializer {
         Validate.notNull(predicate);
         Validate.notNull(object);
 
-        String s = "";
-        if (context == null) {
-            s = SEP + subject.toString() + SEP + predicate.toString() + SEP + object.toString();
+        if (context != null) {
+            writeValue(context, out);
+        }
+        out.put((byte) SEP_CHAR);
+        writeValue(subject, out);
+        out.put((byte) SEP_CHAR);
+        writeValue(predicate, out);
+        out.put((byte) SEP_CHAR);
+        writeValue(object, out);
+    }
+
+    /**
+     * Append the {@link Object#toString()} form of a {@link Value} without building the intermediate {@link String}
+     */
+    static void writeValue(Value value, StringBuilder out) {
+        if (value instanceof URI) {
+            out.append(value.stringValue());
+        } else if (value instanceof BNode) {
+            out.append("_:").append(((BNode) value).getID());
+        } else if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            out.append('"').append(literal.getLabel()).append('"');
+            if (literal.getLanguage() != null) {
+                out.append('@').append(literal.getLanguage());
+            }
+            if (literal.getDatatype() != null) {
+                out.append("^^<").append(literal.getDatatype().stringValue()).append('>');
+            }
+        } else {
+            out.append(value.toString());
+        }
+    }
+
+    static void writeValue(Value value, ByteBuffer out) {
+        if (value instanceof URI) {
+            putUtf8(value.stringValue(), out);
+        } else if (value instanceof BNode) {
+            out.put((byte) '_').put((byte) ':');
+            putUtf8(((BNode) value).getID(), out);
+        } else if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            out.put((byte) '"');
+            putUtf8(literal.getLabel(), out);
+            out.put((byte) '"');
+            if (literal.getLanguage() != null) {
+                out.put((byte) '@');
+                putUtf8(literal.getLanguage(), out);
+            }
+            if (literal.getDatatype() != null) {
+                out.put((byte) '^').put((byte) '^').put((byte) '<');
+                putUtf8(literal.getDatatype().stringValue(), out);
+                out.put((byte) '>');
+            }
         } else {
-            s = context.toString() + SEP + subject.toString() + SEP + predicate.toString() + SEP + object.toString();
+            putUtf8(value.toString(), out);
         }
-        return s;
     }
 
+    /**
+     * Encode a {@link String} as UTF-8 directly into a {@link ByteBuffer}. Unpaired surrogates are written as '?', the same as
+     * {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    static void putUtf8(String s, ByteBuffer out) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    out.put((byte) (0xF0 | (codePoint >> 18)));
+                    out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    out.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    out.put((byte) '?');
+                }
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
 
+    private static int estimateLength(Statement statement) {
+        int length = 16 + statement.getSubject().stringValue().length() + statement.getPredicate().stringValue().length()
+                + statement.getObject().stringValue().length();
+        if (statement.getContext() != null) {
+            length += statement.getContext().stringValue().length();
+        }
+        return length;
+    }
 
 }
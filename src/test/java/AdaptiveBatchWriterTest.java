@@ -0,0 +1,114 @@
+import java.util.Map;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchWriterTest {
+
+    private static Connector createConnector(String tableName) throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        Connector connector = ConfigUtils.getConnector(conf);
+        connector.tableOperations().create(tableName);
+        return connector;
+    }
+
+    private static Mutation mutation(int i) {
+        Mutation m = new Mutation(new Text(String.format("row%05d", i)));
+        m.put(new Text("cf"), new Text("cq"), new Value(Integer.toString(i).getBytes()));
+        return m;
+    }
+
+    @Test
+    public void testGrowAndShrink() throws Exception {
+        Connector connector = createConnector("adaptive_resize");
+        AdaptiveBatchWriter writer = new AdaptiveBatchWriter(connector, "adaptive_resize", 10000, 40000, 1, 2, Long.MAX_VALUE);
+
+        // the caller waited for half of the window
+        Assert.assertTrue(writer.adjust(1000000, 1000, 500));
+        Assert.assertEquals(20000, writer.getMaxMemory());
+        Assert.assertEquals(2, writer.getMaxWriteThreads());
+
+        Assert.assertTrue(writer.adjust(1000000, 1000, 500));
+        Assert.assertEquals(40000, writer.getMaxMemory());
+        Assert.assertEquals(2, writer.getMaxWriteThreads());
+
+        // already at the maximums
+        Assert.assertFalse(writer.adjust(1000000, 1000, 500));
+
+        // neither blocked nor idle
+        Assert.assertFalse(writer.adjust(1000000, 1000, 100));
+
+        // a trickle
+        Assert.assertTrue(writer.adjust(100, 1000, 0));
+        Assert.assertEquals(20000, writer.getMaxMemory());
+        Assert.assertEquals(1, writer.getMaxWriteThreads());
+        Assert.assertTrue(writer.adjust(100, 1000, 0));
+        Assert.assertFalse(writer.adjust(100, 1000, 0));
+        Assert.assertEquals(10000, writer.getMaxMemory());
+        writer.close();
+    }
+
+    @Test
+    public void testResizeKeepsMutations() throws Exception {
+        Connector connector = createConnector("adaptive_write");
+        AdaptiveBatchWriter writer = new AdaptiveBatchWriter(connector, "adaptive_write", 10000, 40000, 1, 4, Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            writer.addMutation(mutation(i));
+            if (i % 10 == 0) {
+                writer.adjust(1000000, 1000, 500);
+            }
+        }
+        writer.close();
+
+        int count = 0;
+        Scanner scanner = connector.createScanner("adaptive_write", new Authorizations());
+        for (Map.Entry<Key, Value> entry : scanner) {
+            count++;
+        }
+        Assert.assertEquals(100, count);
+    }
+
+    @Test
+    public void testFailedResize() throws Exception {
+        Connector connector = createConnector("adaptive_failed");
+        AdaptiveBatchWriter writer = new AdaptiveBatchWriter(connector, "adaptive_failed", 10000, 40000, 1, 2, Long.MAX_VALUE);
+        connector.tableOperations().delete("adaptive_failed");
+
+        try {
+            writer.adjust(1000000, 1000, 500);
+            Assert.fail("resized a writer for a deleted table");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the writer stays failed rather than writing to a closed writer
+        try {
+            writer.addMutation(mutation(0));
+            Assert.fail("wrote to a failed writer");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            writer.close();
+            Assert.fail("closed a failed writer without an error");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() throws Exception {
+        new AdaptiveBatchWriter(createConnector("adaptive_invalid"), "adaptive_invalid", 10000, 5000, 1, 2, Long.MAX_VALUE);
+    }
+}
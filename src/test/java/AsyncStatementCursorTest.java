@@ -0,0 +1,108 @@
+import info.aduna.iteration.CloseableIteratorIteration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class AsyncStatementCursorTest {
+    private ListeningExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private static List<Statement> statements(int count) {
+        ValueFactory vf = new ValueFactoryImpl();
+        List<Statement> statements = new ArrayList<Statement>();
+        for (int i = 0; i < count; i++) {
+            statements.add(vf.createStatement(vf.createURI("uri:s" + i), GeoConstants.GEO_AS_WKT,
+                    vf.createLiteral("POINT(" + i + " 0)", GeoConstants.XMLSCHEMA_OGC_WKT)));
+        }
+        return statements;
+    }
+
+    private AsyncStatementCursor cursor(List<Statement> statements, int batchSize) {
+        return new AsyncStatementCursor(new CloseableIteratorIteration<Statement, QueryEvaluationException>(statements.iterator()),
+                executor, batchSize);
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        List<Statement> statements = statements(10);
+        AsyncStatementCursor cursor = cursor(statements, 4);
+
+        List<Statement> actual = new ArrayList<Statement>();
+        List<Integer> sizes = new ArrayList<Integer>();
+        while (true) {
+            List<Statement> batch = cursor.nextBatch().get(10, TimeUnit.SECONDS);
+            if (batch.isEmpty()) {
+                break;
+            }
+            sizes.add(batch.size());
+            actual.addAll(batch);
+        }
+
+        Assert.assertEquals(statements, actual);
+        Assert.assertEquals(Arrays.asList(4, 4, 2), sizes);
+        Assert.assertTrue(cursor.isExhausted());
+        Assert.assertTrue(cursor.nextBatch().get().isEmpty());
+    }
+
+    @Test
+    public void testManyCursorsShareOneThread() throws Exception {
+        List<Statement> statements = statements(5);
+        List<AsyncStatementCursor> cursors = new ArrayList<AsyncStatementCursor>();
+        for (int i = 0; i < 100; i++) {
+            cursors.add(cursor(statements, 2));
+        }
+
+        // every cursor is open at once, and each reads only what is requested
+        List<ListenableFuture<List<Statement>>> firstBatches = new ArrayList<ListenableFuture<List<Statement>>>();
+        for (AsyncStatementCursor cursor : cursors) {
+            firstBatches.add(cursor.nextBatch());
+        }
+        for (ListenableFuture<List<Statement>> batch : firstBatches) {
+            Assert.assertEquals(statements.subList(0, 2), batch.get(10, TimeUnit.SECONDS));
+        }
+        for (AsyncStatementCursor cursor : cursors) {
+            Assert.assertFalse(cursor.isExhausted());
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        AsyncStatementCursor cursor = cursor(statements(5), 2);
+        Assert.assertEquals(2, cursor.nextBatch().get(10, TimeUnit.SECONDS).size());
+        cursor.close();
+        Assert.assertTrue(cursor.isExhausted());
+        try {
+            cursor.nextBatch().get();
+            Assert.fail("expected the closed cursor to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
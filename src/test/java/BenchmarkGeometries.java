@@ -0,0 +1,73 @@
+import java.util.Random;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+/**
+ * Deterministic geometries and statements for the benchmarks. The same type and vertex count always give the same geometry.
+ */
+public class BenchmarkGeometries {
+    public static final String MULTIPOINT = "MULTIPOINT";
+    public static final String LINESTRING = "LINESTRING";
+    public static final String POLYGON = "POLYGON";
+
+    private static final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), GeometryDecoder.SRID);
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private BenchmarkGeometries() {
+    }
+
+    /**
+     * @param type
+     *            {@link #MULTIPOINT}, {@link #LINESTRING} or {@link #POLYGON}
+     * @param vertices
+     *            the number of distinct vertices
+     * @return a geometry about a kilometer across near Washington, DC
+     */
+    public static Geometry create(String type, int vertices) {
+        Random random = new Random(vertices * 31L + type.hashCode());
+        double x = -77.0365;
+        double y = 38.8977;
+        double size = 0.01;
+
+        if (MULTIPOINT.equals(type)) {
+            Coordinate[] coordinates = new Coordinate[vertices];
+            for (int i = 0; i < vertices; i++) {
+                coordinates[i] = new Coordinate(x + random.nextDouble() * size, y + random.nextDouble() * size);
+            }
+            return gf.createMultiPoint(coordinates);
+        } else if (LINESTRING.equals(type)) {
+            Coordinate[] coordinates = new Coordinate[vertices];
+            double step = size / vertices;
+            for (int i = 0; i < vertices; i++) {
+                coordinates[i] = new Coordinate(x + i * step, y + random.nextGaussian() * step);
+            }
+            return gf.createLineString(coordinates);
+        } else if (POLYGON.equals(type)) {
+            // a star shaped ring is always simple
+            Coordinate[] coordinates = new Coordinate[vertices + 1];
+            for (int i = 0; i < vertices; i++) {
+                double angle = 2 * Math.PI * i / vertices;
+                double radius = size / 2 * (0.5 + 0.5 * random.nextDouble());
+                coordinates[i] = new Coordinate(x + radius * Math.cos(angle), y + radius * Math.sin(angle));
+            }
+            coordinates[vertices] = coordinates[0];
+            return gf.createPolygon(gf.createLinearRing(coordinates), null);
+        }
+        throw new IllegalArgumentException("Unknown geometry type: " + type);
+    }
+
+    /**
+     * @return a geo:asWKT statement holding the geometry
+     */
+    public static Statement createStatement(String type, int vertices) {
+        return vf.createStatement(vf.createURI("http://example.com/feature/" + type.toLowerCase() + "/" + vertices),
+                GeoConstants.GEO_AS_WKT, vf.createLiteral(create(type, vertices).toString(), GeoConstants.XMLSCHEMA_OGC_WKT));
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class BinaryStatementSerializerTest {
+    private static final ValueFactory VF = new ValueFactoryImpl();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Statement[] statements = {
+                new StatementImpl(VF.createURI("uri:s"), GeoConstants.GEO_AS_WKT, VF.createLiteral("POINT (2 4)",
+                        GeoConstants.XMLSCHEMA_OGC_WKT)),
+                new StatementImpl(VF.createBNode("b1"), VF.createURI("uri:p"), VF.createLiteral("caf\u00e9 \ud83c\udf0d", "fr")),
+                new StatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createLiteral("with \"quotes\"")),
+                new ContextStatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createBNode("o"), VF.createURI("uri:c")) };
+
+        for (Statement statement : statements) {
+            byte[] encoded = BinaryStatementSerializer.writeStatement(statement);
+            Statement read = BinaryStatementSerializer.readStatement(encoded);
+            Assert.assertEquals(statement, read);
+            Assert.assertEquals(statement.getContext(), read.getContext());
+            Assert.assertEquals(statement.getObject(), read.getObject());
+        }
+    }
+
+    @Test
+    public void testLongString() throws Exception {
+        StringBuilder wkt = new StringBuilder("LINESTRING (");
+        for (int i = 0; i < 1000; i++) {
+            wkt.append(i).append(' ').append(i).append(", ");
+        }
+        wkt.append("0 0)");
+        Statement statement = new StatementImpl(VF.createURI("uri:s"), GeoConstants.GEO_AS_WKT, VF.createLiteral(wkt.toString(),
+                GeoConstants.XMLSCHEMA_OGC_WKT));
+        Assert.assertEquals(statement, BinaryStatementSerializer.readStatement(BinaryStatementSerializer.writeStatement(statement)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        Statement statement = new StatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createURI("uri:o"));
+        byte[] encoded = BinaryStatementSerializer.writeStatement(statement);
+        byte[] truncated = new byte[encoded.length - 3];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        BinaryStatementSerializer.readStatement(truncated);
+    }
+}
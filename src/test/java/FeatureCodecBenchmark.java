@@ -0,0 +1,79 @@
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.Statement;
+
+/**
+ * Converting statements to features on ingest (the ID hash, WKT parsing and attribute encoding) and features back to statements in the
+ * query iterators, for both statement encodings. The indexer runs on a mock instance and nothing is written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class FeatureCodecBenchmark {
+
+    @Param({ BenchmarkGeometries.MULTIPOINT, BenchmarkGeometries.LINESTRING, BenchmarkGeometries.POLYGON })
+    public String geometryType;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int vertices;
+
+    @Param({ ConfigUtils.GEO_STATEMENT_ENCODING_STRING, ConfigUtils.GEO_STATEMENT_ENCODING_BINARY })
+    public String encoding;
+
+    private GeoMesaGeoIndexer indexer;
+    private Statement statement;
+    private SimpleFeature feature;
+
+    @Setup
+    public void setup() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.GEO_TABLENAME, "benchmark_" + encoding);
+        conf.set(ConfigUtils.GEO_STATEMENT_ENCODING, encoding);
+        indexer = new GeoMesaGeoIndexer(conf);
+
+        statement = BenchmarkGeometries.createStatement(geometryType, vertices);
+        feature = indexer.createFeature(statement);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        indexer.close();
+    }
+
+    @Benchmark
+    public SimpleFeature createFeature() throws Exception {
+        return indexer.createFeature(statement);
+    }
+
+    @Benchmark
+    public Statement readFeature() throws Exception {
+        return indexer.readStatement(feature);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FeatureCodecBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
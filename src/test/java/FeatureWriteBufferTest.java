@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+public class FeatureWriteBufferTest {
+
+    private static List<SimpleFeature> features(String... ids) {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (String id : ids) {
+            features.add(RecordingFeatureStore.feature(id));
+        }
+        return features;
+    }
+
+    private static void waitForAttempts(RecordingFeatureStore store, int attempts) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (store.getAttempts() < attempts && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(attempts, store.getAttempts());
+    }
+
+    @Test
+    public void testMaxFeatures() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 3, Long.MAX_VALUE, 0);
+
+        buffer.addAll(features("a", "b"));
+        Assert.assertEquals(0, store.getAttempts());
+        Assert.assertEquals(2, buffer.size());
+
+        buffer.addAll(features("c", "d"));
+        Assert.assertEquals(1, store.getBatches().size());
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), store.getFeatureIds());
+        Assert.assertEquals(1, buffer.size());
+        buffer.close();
+    }
+
+    @Test
+    public void testMaxBytes() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        // every feature is larger than a byte, so each one fills the buffer
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 1000, 1, 0);
+
+        buffer.addAll(features("a", "b", "c"));
+        Assert.assertEquals(3, store.getBatches().size());
+        Assert.assertEquals(0, buffer.size());
+        buffer.close();
+    }
+
+    @Test
+    public void testMaxLatency() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 1000, Long.MAX_VALUE, 20);
+
+        buffer.addAll(features("a"));
+        waitForAttempts(store, 1);
+        Assert.assertEquals(Arrays.asList("a"), store.getFeatureIds());
+        Assert.assertEquals(0, buffer.size());
+        buffer.close();
+    }
+
+    @Test
+    public void testUnbuffered() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 0, Long.MAX_VALUE, 20);
+
+        buffer.addAll(features("a", "b", "c"));
+        buffer.addAll(features("d"));
+        Assert.assertEquals(2, store.getBatches().size());
+        Assert.assertEquals(3, store.getBatches().get(0).size());
+        Assert.assertEquals(0, buffer.size());
+        buffer.close();
+    }
+
+    @Test
+    public void testFlushAndClose() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 1000, Long.MAX_VALUE, 0);
+
+        buffer.addAll(features("a", "b"));
+        buffer.flush();
+        Assert.assertEquals(Arrays.asList("a", "b"), store.getFeatureIds());
+
+        // flushing an empty buffer does not write
+        buffer.flush();
+        Assert.assertEquals(1, store.getAttempts());
+
+        buffer.addAll(features("c"));
+        buffer.close();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), store.getFeatureIds());
+    }
+
+    @Test
+    public void testTimerFailureReachesNextCaller() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 1000, Long.MAX_VALUE, 20);
+        store.setFailure(new IOException("write failed"));
+
+        buffer.addAll(features("a"));
+        waitForAttempts(store, 1);
+        store.setFailure(null);
+
+        try {
+            buffer.addAll(features("b"));
+            Assert.fail("the failed timed write was not reported");
+        } catch (IOException e) {
+            Assert.assertEquals("write failed", e.getMessage());
+        }
+
+        // the failure is reported once
+        buffer.addAll(features("c"));
+        buffer.close();
+        Assert.assertEquals(Arrays.asList("c"), store.getFeatureIds());
+    }
+
+    @Test
+    public void testWriteListeners() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 1000, Long.MAX_VALUE, 0);
+        final List<String> notified = new ArrayList<String>();
+        buffer.addWriteListener(new FeatureWriteBuffer.WriteListener() {
+            @Override
+            public void featuresWritten(Collection<SimpleFeature> features) {
+                for (SimpleFeature feature : features) {
+                    notified.add(feature.getID());
+                }
+            }
+        });
+
+        buffer.addAll(features("a", "b"));
+        Assert.assertTrue(notified.isEmpty());
+        buffer.flush();
+        Assert.assertEquals(Arrays.asList("a", "b"), notified);
+
+        // a failed batch may be partially written, so listeners hear about it too
+        store.setFailure(new IOException("write failed"));
+        buffer.addAll(features("c"));
+        try {
+            buffer.flush();
+            Assert.fail("the failed write was not reported");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), notified);
+    }
+}
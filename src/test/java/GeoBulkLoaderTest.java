@@ -0,0 +1,266 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+
+import com.google.common.base.Charsets;
+import com.vividsolutions.jts.geom.Envelope;
+
+public class GeoBulkLoaderTest {
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static File writeConfigFile(String... keyValues) throws Exception {
+        Configuration fileConf = new Configuration(false);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            fileConf.set(keyValues[i], keyValues[i + 1]);
+        }
+        File file = File.createTempFile("geo-bulk-loader", ".xml");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            fileConf.writeXml(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testConfigFileOverridesDefaults() throws Exception {
+        File file = writeConfigFile(ConfigUtils.GEO_INGEST_THREADS, "3", ConfigUtils.GEO_WRITE_BUFFER_MAX_FEATURES, "42");
+
+        Configuration conf = GeoBulkLoader.createConfiguration(file.getAbsolutePath(), new Properties());
+        Assert.assertEquals(3, conf.getInt(ConfigUtils.GEO_INGEST_THREADS, -1));
+        Assert.assertEquals(42, conf.getInt(ConfigUtils.GEO_WRITE_BUFFER_MAX_FEATURES, -1));
+    }
+
+    @Test
+    public void testPropertiesOverrideConfigFile() throws Exception {
+        File file = writeConfigFile(ConfigUtils.GEO_INGEST_THREADS, "3");
+        Properties properties = new Properties();
+        properties.setProperty(ConfigUtils.GEO_INGEST_THREADS, "5");
+
+        Configuration conf = GeoBulkLoader.createConfiguration(file.getAbsolutePath(), properties);
+        Assert.assertEquals(5, conf.getInt(ConfigUtils.GEO_INGEST_THREADS, -1));
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        Configuration conf = GeoBulkLoader.createConfiguration(null, new Properties());
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(), conf.getInt(ConfigUtils.GEO_INGEST_THREADS, -1));
+        Assert.assertEquals(10000, conf.getInt(ConfigUtils.GEO_WRITE_BUFFER_MAX_FEATURES, -1));
+    }
+
+    /**
+     * Returns at most a few bytes per read, so that lines straddle many buffer refills.
+     */
+    private static class TrickleInputStream extends InputStream {
+        private final InputStream in;
+
+        TrickleInputStream(byte[] bytes) {
+            this.in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 7));
+        }
+    }
+
+    private static void assertLines(InputStream in, List<byte[]> lines) throws Exception {
+        GeoBulkLoader.LineReader reader = new GeoBulkLoader.LineReader(in, 100);
+        long expectedOffset = 100;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertEquals(expectedOffset, reader.getOffset());
+            out.reset();
+            Assert.assertTrue(reader.readLine(out));
+            byte[] line = lines.get(i);
+            expectedOffset += line.length;
+            if (i == lines.size() - 1) {
+                // the unterminated last line is terminated in the output but not counted in the offset
+                Assert.assertEquals(new String(line, Charsets.UTF_8) + "\n", new String(out.toByteArray(), Charsets.UTF_8));
+            } else {
+                Assert.assertArrayEquals(line, out.toByteArray());
+            }
+        }
+        Assert.assertEquals(expectedOffset, reader.getOffset());
+        out.reset();
+        Assert.assertFalse(reader.readLine(out));
+        Assert.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testLineReaderOffsets() throws Exception {
+        // lines of every length up to 1000 bytes span several 64KB read buffers
+        List<byte[]> lines = new ArrayList<byte[]>();
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < (i * 37) % 1000; j++) {
+                sb.append((char) ('a' + j % 26));
+            }
+            if (i < 299) {
+                sb.append('\n');
+            }
+            byte[] line = sb.toString().getBytes(Charsets.UTF_8);
+            lines.add(line);
+            all.write(line);
+        }
+        Assert.assertTrue(all.size() > 2 * 64 * 1024);
+
+        assertLines(new ByteArrayInputStream(all.toByteArray()), lines);
+        assertLines(new TrickleInputStream(all.toByteArray()), lines);
+    }
+
+    private static String line(int i) {
+        return "<uri:s" + i + "> <" + GeoConstants.GEO_AS_WKT + "> \"POINT (" + i + " " + i + ")\"^^<" + GeoConstants.XMLSCHEMA_OGC_WKT
+                + "> .\n";
+    }
+
+    private static Statement statement(int i) {
+        return vf.createStatement(vf.createURI("uri:s" + i), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POINT (" + i + " " + i + ")", GeoConstants.XMLSCHEMA_OGC_WKT));
+    }
+
+    private static File writeLines(List<String> lines) throws Exception {
+        File file = File.createTempFile("geo-bulk-loader", ".nt");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            for (String line : lines) {
+                out.write(line.getBytes(Charsets.UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static GeoMesaGeoIndexer createIndexer(String tableName) throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, tableName);
+        return new GeoMesaGeoIndexer(conf);
+    }
+
+    private static List<Statement> queryAll(GeoIndexer indexer) throws Exception {
+        List<Statement> statements = new ArrayList<Statement>();
+        CloseableIteration<Statement, ?> results = indexer.queryIntersects(GeometryDecoder.GEOMETRY_FACTORY.toGeometry(new Envelope(-180,
+                180, -90, 90)));
+        while (results.hasNext()) {
+            statements.add(results.next());
+        }
+        results.close();
+        return statements;
+    }
+
+    @Test
+    public void testCheckpoints() throws Exception {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            lines.add(line(i));
+        }
+        File file = writeLines(lines);
+
+        GeoMesaGeoIndexer indexer = createIndexer("geo_bulk_loader_checkpoints");
+        try {
+            GeoBulkLoader loader = new GeoBulkLoader(indexer, 2, 2, Long.MAX_VALUE);
+            Assert.assertEquals(10, loader.load(file, RDFFormat.NTRIPLES, 0));
+            Assert.assertEquals(file.length(), loader.getCheckpointOffset());
+            Assert.assertEquals(10, queryAll(indexer).size());
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        List<String> lines = new ArrayList<String>();
+        long sixLines = 0;
+        for (int i = 0; i < 10; i++) {
+            lines.add(i == 6 ? "<uri:broken> is not N-Triples .\n" : line(i));
+            if (i < 6) {
+                sixLines += line(i).getBytes(Charsets.UTF_8).length;
+            }
+        }
+        File broken = writeLines(lines);
+
+        GeoMesaGeoIndexer indexer = createIndexer("geo_bulk_loader_resume");
+        try {
+            // batches of two lines with a checkpoint after each, so the last checkpoint before the broken line follows line six
+            GeoBulkLoader loader = new GeoBulkLoader(indexer, 2, 1, Long.MAX_VALUE);
+            try {
+                loader.load(broken, RDFFormat.NTRIPLES, 0);
+                Assert.fail("loaded a broken file");
+            } catch (RDFParseException e) {
+                // expected
+            }
+            Assert.assertEquals(sixLines, loader.getCheckpointOffset());
+            Assert.assertEquals(6, queryAll(indexer).size());
+
+            // resume the repaired file from the checkpoint
+            lines.set(6, line(6));
+            File repaired = writeLines(lines);
+            GeoBulkLoader resumed = new GeoBulkLoader(indexer, 2, 1, Long.MAX_VALUE);
+            Assert.assertEquals(4, resumed.load(repaired, RDFFormat.NTRIPLES, loader.getCheckpointOffset()));
+            Assert.assertEquals(repaired.length(), resumed.getCheckpointOffset());
+
+            List<Statement> expected = new ArrayList<Statement>();
+            for (int i = 0; i < 10; i++) {
+                expected.add(statement(i));
+            }
+            List<Statement> actual = queryAll(indexer);
+            Assert.assertEquals(10, actual.size());
+            Assert.assertEquals(new HashSet<Statement>(expected), new HashSet<Statement>(actual));
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void testOffsetPastEnd() throws Exception {
+        File file = writeLines(Arrays.asList(line(0)));
+        GeoMesaGeoIndexer indexer = createIndexer("geo_bulk_loader_offset");
+        try {
+            GeoBulkLoader loader = new GeoBulkLoader(indexer, 2, 1, Long.MAX_VALUE);
+            try {
+                loader.load(file, RDFFormat.NTRIPLES, file.length() + 1);
+                Assert.fail("loaded from past the end of the file");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            // the end of the file is a valid, empty resume point
+            Assert.assertEquals(0, loader.load(file, RDFFormat.NTRIPLES, file.length()));
+        } finally {
+            indexer.close();
+        }
+    }
+}
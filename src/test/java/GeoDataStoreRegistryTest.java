@@ -0,0 +1,71 @@
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GeoDataStoreRegistryTest {
+
+    private static Configuration createConf(String tableName) {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, tableName);
+        return conf;
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        GeoDataStoreRegistry registry = new GeoDataStoreRegistry();
+        Configuration conf = createConf("registry_shared");
+
+        GeoDataStoreRegistry.Lease l1 = registry.acquire(conf);
+        GeoDataStoreRegistry.Lease l2 = registry.acquire(new Configuration(conf));
+        Assert.assertSame(l1.getDataStore(), l2.getDataStore());
+        Assert.assertSame(l1.getFeatureType(), l2.getFeatureType());
+        Assert.assertSame(l1.getConnector(), l2.getConnector());
+        Assert.assertEquals(1, registry.size());
+
+        GeoDataStoreRegistry.Lease other = registry.acquire(createConf("registry_other"));
+        Assert.assertNotSame(l1.getDataStore(), other.getDataStore());
+        Assert.assertEquals(2, registry.size());
+
+        l1.release();
+        l2.release();
+        other.release();
+        Assert.assertEquals(2, registry.size());
+        registry.disposeUnused();
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        GeoDataStoreRegistry registry = new GeoDataStoreRegistry();
+        Configuration conf = createConf("registry_idle");
+        conf.setLong(ConfigUtils.GEO_DATASTORE_IDLE_TIMEOUT, 0);
+
+        GeoDataStoreRegistry.Lease l1 = registry.acquire(conf);
+        GeoDataStoreRegistry.Lease l2 = registry.acquire(conf);
+        l1.release();
+        // releasing twice does not release the other lease
+        l1.release();
+        Assert.assertEquals(1, registry.size());
+
+        l2.release();
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testNotShared() throws Exception {
+        GeoDataStoreRegistry registry = new GeoDataStoreRegistry();
+        Configuration conf = createConf("registry_unshared");
+        conf.setBoolean(ConfigUtils.GEO_DATASTORE_SHARED, false);
+
+        GeoDataStoreRegistry.Lease l1 = registry.acquire(conf);
+        GeoDataStoreRegistry.Lease l2 = registry.acquire(conf);
+        Assert.assertNotSame(l1.getDataStore(), l2.getDataStore());
+        Assert.assertEquals(0, registry.size());
+        l1.release();
+        l2.release();
+    }
+}
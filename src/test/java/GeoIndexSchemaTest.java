@@ -0,0 +1,61 @@
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class GeoIndexSchemaTest {
+
+    @Test
+    public void testDefaultLayout() throws Exception {
+        Assert.assertEquals("%~#s%25#r%RDF#cstr%0,3#gh%yyyyMMdd#d::%~#s%3,2#gh::%~#s%#id",
+                GeoIndexSchema.fromConfiguration("RDF", new Configuration()).getSchemaFormat());
+    }
+
+    @Test
+    public void testConfiguredLayout() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(ConfigUtils.GEO_NUM_PARTITIONS, 8);
+        conf.setInt(ConfigUtils.GEO_INDEX_ROW_GEOHASH_CHARS, 4);
+        conf.setInt(ConfigUtils.GEO_INDEX_COLUMN_GEOHASH_CHARS, 3);
+        conf.set(ConfigUtils.GEO_INDEX_DATE_FORMAT, "yyyyMM");
+        Assert.assertEquals("%~#s%8#r%RDF#cstr%0,4#gh%yyyyMM#d::%~#s%4,3#gh::%~#s%#id",
+                GeoIndexSchema.fromConfiguration("RDF", conf).getSchemaFormat());
+
+        conf.set(ConfigUtils.GEO_INDEX_DATE_FORMAT, "");
+        Assert.assertEquals("%~#s%8#r%RDF#cstr%0,4#gh::%~#s%4,3#gh::%~#s%#id", GeoIndexSchema.fromConfiguration("RDF", conf)
+                .getSchemaFormat());
+    }
+
+    @Test
+    public void testRowRanges() throws Exception {
+        // three geohash characters are cells of 1.40625 degrees square
+        GeoIndexSchema schema = new GeoIndexSchema("RDF", 25, 3, 2, "yyyyMMdd");
+        Assert.assertEquals(new Envelope(0, 1.40625, 0, 1.40625), schema.getCoveringCells(new Envelope(0.5, 1, 0.5, 1)));
+        // a shard setting of 25 gives shards 0 to 25
+        Assert.assertEquals(26, schema.getShardCount());
+        Assert.assertEquals(26, schema.estimateRowRanges(new Envelope(0.5, 1, 0.5, 1)));
+        Assert.assertEquals(26 * 4, schema.estimateRowRanges(new Envelope(1, 2, 1, 2)));
+        Assert.assertEquals(26L * 256 * 128, schema.estimateRowRanges(new Envelope(-180, 180, -90, 90)));
+    }
+
+    @Test
+    public void testInvalidLayouts() throws Exception {
+        assertInvalid(0, 3, 2, "yyyyMMdd");
+        assertInvalid(1000, 3, 2, "yyyyMMdd");
+        assertInvalid(25, 0, 2, "yyyyMMdd");
+        assertInvalid(25, 3, 0, "yyyyMMdd");
+        assertInvalid(25, 5, 3, "yyyyMMdd");
+        assertInvalid(25, 3, 2, "yyyyMMddq");
+        assertInvalid(25, 3, 2, "yyyy#MM");
+    }
+
+    private static void assertInvalid(int shards, int rowGeohashChars, int columnGeohashChars, String dateFormat) {
+        try {
+            new GeoIndexSchema("RDF", shards, rowGeohashChars, columnGeohashChars, dateFormat);
+            Assert.fail("expected an invalid layout");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
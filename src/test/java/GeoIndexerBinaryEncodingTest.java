@@ -0,0 +1,100 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Stores and queries statements through a {@link GeoMesaGeoIndexer} with {@link ConfigUtils#GEO_STATEMENT_ENCODING} set to binary, so that
+ * the statements are held in a single byte array attribute of the feature.
+ */
+public class GeoIndexerBinaryEncodingTest {
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static final Geometry WORLD = GeometryDecoder.GEOMETRY_FACTORY.toGeometry(new Envelope(-180, 180, -90, 90));
+
+    private static final Resource CONTEXT = vf.createURI("uri:context");
+
+    private static Statement point;
+    private static Statement polygon;
+    private static Statement blankInContext;
+
+    private static GeoMesaGeoIndexer g;
+
+    @BeforeClass
+    public static void before() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.GEO_TABLENAME, "triplestore_geospacial_binary");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_STATEMENT_ENCODING, ConfigUtils.GEO_STATEMENT_ENCODING_BINARY);
+
+        point = vf.createStatement(vf.createURI("uri:point"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POINT (1 1)", GeoConstants.XMLSCHEMA_OGC_WKT));
+        polygon = vf.createStatement(vf.createURI("uri:polygon"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POLYGON ((10 10, 10 20, 20 20, 20 10, 10 10))", GeoConstants.XMLSCHEMA_OGC_WKT));
+        blankInContext = vf.createStatement(vf.createBNode("b1"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POINT (-5 -5)", GeoConstants.XMLSCHEMA_OGC_WKT), CONTEXT);
+
+        g = new GeoMesaGeoIndexer(conf);
+        g.storeStatement(point);
+        g.storeStatement(polygon);
+        g.storeStatement(blankInContext);
+        g.flush();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        g.close();
+    }
+
+    private static Set<Statement> getSet(CloseableIteration<Statement, ?> iter) throws Exception {
+        Set<Statement> set = new HashSet<Statement>();
+        while (iter.hasNext()) {
+            set.add(iter.next());
+        }
+        return set;
+    }
+
+    @Test
+    public void testFeatureHoldsBinaryStatement() throws Exception {
+        SimpleFeature feature = g.createFeature(point);
+        Assert.assertEquals(byte[].class, feature.getFeatureType().getDescriptor(GeoMesaGeoIndexer.STATEMENT_ATTRIBUTE).getType()
+                .getBinding());
+        Assert.assertTrue(feature.getAttribute(GeoMesaGeoIndexer.STATEMENT_ATTRIBUTE) instanceof byte[]);
+    }
+
+    @Test
+    public void testQueriesDecodeStatements() throws Exception {
+        // the context and the blank node survive the round trip through the datastore
+        Assert.assertEquals(Sets.newHashSet(point, polygon, blankInContext), getSet(g.queryIntersects(WORLD)));
+        Assert.assertEquals(Sets.newHashSet(polygon),
+                getSet(g.queryWithin(GeometryDecoder.GEOMETRY_FACTORY.toGeometry(new Envelope(5, 25, 5, 25)))));
+        Assert.assertEquals(3, g.count(GeoConstants.GEO_SF_INTERSECTS, WORLD, null));
+    }
+
+    @Test
+    public void testConstraints() throws Exception {
+        StatementContraints inContext = new StatementContraints().setContext(CONTEXT);
+        Assert.assertEquals(Sets.newHashSet(blankInContext), getSet(g.queryIntersects(WORLD, inContext)));
+
+        StatementContraints subject = new StatementContraints().setSubject(point.getSubject());
+        Assert.assertEquals(Sets.newHashSet(point), getSet(g.queryIntersects(WORLD, subject)));
+    }
+}
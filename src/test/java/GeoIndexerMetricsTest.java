@@ -0,0 +1,153 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+public class GeoIndexerMetricsTest {
+    private static final ValueFactory vf = new ValueFactoryImpl();
+    private static final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    public void testHistogram() throws Exception {
+        GeoIndexerMetrics metrics = new GeoIndexerMetrics(null);
+        for (int i = 1; i <= 1000; i++) {
+            metrics.update("h", i);
+        }
+        GeoIndexerMetrics.Histogram h = metrics.getHistogram("h");
+        Assert.assertEquals(1000, h.getCount());
+        Assert.assertEquals(500.5, h.getMean(), 1e-9);
+        Assert.assertEquals(1000, h.getMax());
+        // 500 is in the bucket 256 to 511
+        Assert.assertEquals(511, h.getPercentile(0.5));
+        // capped at the maximum
+        Assert.assertEquals(1000, h.getPercentile(0.999));
+        Assert.assertNull(metrics.getHistogram("missing"));
+        Assert.assertEquals(0, metrics.getCount("missing"));
+    }
+
+    @Test
+    public void testDelegateAndJmx() throws Exception {
+        final long[] forwarded = new long[2];
+        GeoIndexerMetrics metrics = new GeoIndexerMetrics(new GeoMetricsRegistry() {
+            @Override
+            public void increment(String name, long delta) {
+                forwarded[0] += delta;
+            }
+
+            @Override
+            public void update(String name, long value) {
+                forwarded[1] += value;
+            }
+        });
+        metrics.increment("c", 3);
+        metrics.update("h", 7);
+        Assert.assertEquals(3, forwarded[0]);
+        Assert.assertEquals(7, forwarded[1]);
+
+        metrics.register("metrics_test");
+        ObjectName name = metrics.getObjectName();
+        Assert.assertNotNull(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Assert.assertEquals(3L, server.getAttribute(name, "c"));
+        Assert.assertEquals(1L, server.getAttribute(name, "h.count"));
+        Assert.assertEquals(7L, server.getAttribute(name, "h.max"));
+        metrics.unregister();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testIndexerMetrics() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, "triplestore_geospacial_metrics");
+
+        GeoMesaGeoIndexer g = new GeoMesaGeoIndexer(conf);
+        GeoIndexerMetrics metrics = g.getMetrics();
+        Assert.assertNotNull(metrics.getObjectName());
+
+        Statement point = vf.createStatement(vf.createURI("uri:point"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POINT (1 1)", GeoConstants.XMLSCHEMA_OGC_WKT));
+        Statement bad = vf.createStatement(vf.createURI("uri:bad"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral("POINT (1", GeoConstants.XMLSCHEMA_OGC_WKT));
+        Statement notLiteral = vf.createStatement(vf.createURI("uri:other"), GeoConstants.GEO_AS_WKT, vf.createURI("uri:point"));
+        g.storeStatements(Arrays.asList(point, bad, notLiteral));
+        g.flush();
+
+        Assert.assertEquals(3, metrics.getCount(GeoIndexerMetrics.STATEMENTS_RECEIVED));
+        Assert.assertEquals(1, metrics.getCount(GeoIndexerMetrics.STATEMENTS_FILTERED));
+        Assert.assertEquals(1, metrics.getCount(GeoIndexerMetrics.STATEMENTS_REJECTED));
+        Assert.assertEquals(1, metrics.getCount(GeoIndexerMetrics.FEATURES_WRITTEN));
+        Assert.assertEquals(1, metrics.getHistogram(GeoIndexerMetrics.WRITE_BATCH_SIZE).getCount());
+
+        CloseableIteration<Statement, ?> results = g.queryIntersects(gf.toGeometry(new Envelope(0, 2, 0, 2)));
+        while (results.hasNext()) {
+            results.next();
+        }
+        String operation = GeoConstants.GEO_SF_INTERSECTS.getLocalName();
+        Assert.assertEquals(1, metrics.getHistogram(GeoIndexerMetrics.queryMetric(operation, "scanNanos")).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(GeoIndexerMetrics.queryMetric(operation, "firstResultNanos")).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(GeoIndexerMetrics.queryMetric(operation, "results")).getMax());
+
+        ObjectName name = metrics.getObjectName();
+        g.close();
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    private static int count(CloseableIteration<Statement, ?> results) throws Exception {
+        int count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        results.close();
+        return count;
+    }
+
+    @Test
+    public void testQueryCacheHits() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, "triplestore_geospacial_metrics_cache");
+        conf.setBoolean(ConfigUtils.GEO_QUERY_CACHE_ENABLED, true);
+
+        GeoMesaGeoIndexer g = new GeoMesaGeoIndexer(conf);
+        try {
+            GeoIndexerMetrics metrics = g.getMetrics();
+            g.storeStatement(vf.createStatement(vf.createURI("uri:point"), GeoConstants.GEO_AS_WKT,
+                    vf.createLiteral("POINT (1 1)", GeoConstants.XMLSCHEMA_OGC_WKT)));
+            g.flush();
+
+            Envelope envelope = new Envelope(0, 2, 0, 2);
+            Assert.assertEquals(1, count(g.queryIntersects(gf.toGeometry(envelope))));
+            Assert.assertEquals(0, metrics.getCount(GeoIndexerMetrics.QUERY_CACHE_HITS));
+
+            // the second query is answered from the cache, which is counted instead of a scan
+            Assert.assertEquals(1, count(g.queryIntersects(gf.toGeometry(envelope))));
+            Assert.assertEquals(1, metrics.getCount(GeoIndexerMetrics.QUERY_CACHE_HITS));
+            String operation = GeoConstants.GEO_SF_INTERSECTS.getLocalName();
+            Assert.assertEquals(1, metrics.getHistogram(GeoIndexerMetrics.queryMetric(operation, "scanNanos")).getCount());
+        } finally {
+            g.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * The landscape shared by the simple features tests, and the helpers to store and compare it. Each subclass stores the landscape in its
+ * own table with {@link #createIndexer(String, boolean)}.
+ */
+public abstract class GeoIndexerSfFixture {
+    protected static GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
+
+    // Here is the landscape:
+    /**
+     * <pre>
+     *   +---+---+---+---+---+---+---+
+     *   |        F          |       |
+     *   +  A    +           +   C   +
+     *   |                   |       |
+     *   +---+---+    E      +---+---+
+     *   |       |   /       |
+     *   +   B   +  /+---+---+
+     *   |       | / |       |
+     *   +---+---+/--+---+---+
+     *           /   |     D |
+     *          /    +---+---+
+     * </pre>
+     **/
+
+    protected static final Polygon A = poly(bbox(0, 1, 4, 5));
+    protected static final Polygon B = poly(bbox(0, 1, 2, 3));
+    protected static final Polygon C = poly(bbox(4, 3, 6, 5));
+    protected static final Polygon D = poly(bbox(3, 0, 5, 2));
+
+    protected static final Point F = point(2, 4);
+
+    protected static final LineString E = line(2, 0, 3, 3);
+
+    protected static final Geometry[] EMPTY_RESULTS = {};
+
+    /**
+     * Create an indexer on a mock instance and store the landscape in it.
+     *
+     * @param tableName
+     *            the geo table
+     * @param refine
+     *            the value of {@link ConfigUtils#GEO_QUERY_REFINE}
+     */
+    protected static GeoIndexer createIndexer(String tableName, boolean refine) throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.GEO_TABLENAME, tableName);
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.setBoolean(ConfigUtils.GEO_QUERY_REFINE, refine);
+
+        GeoIndexer g = new GeoMesaGeoIndexer(conf);
+        g.storeStatement(statement(A));
+        g.storeStatement(statement(B));
+        g.storeStatement(statement(C));
+        g.storeStatement(statement(D));
+        g.storeStatement(statement(F));
+        g.storeStatement(statement(E));
+        return g;
+    }
+
+    protected static Statement statement(Geometry geo) {
+        ValueFactory vf = new ValueFactoryImpl();
+        Resource subject = vf.createURI("uri:" + DigestUtils.md5Hex(geo.toString()));
+        URI predicate = GeoConstants.GEO_AS_WKT;
+        Value object = vf.createLiteral(geo.toString(), GeoConstants.XMLSCHEMA_OGC_WKT);
+        return new StatementImpl(subject, predicate, object);
+    }
+
+    protected static Point point(double x, double y) {
+        return gf.createPoint(new Coordinate(x, y));
+    }
+
+    protected static LineString line(double x1, double y1, double x2, double y2) {
+        return new LineString(new PackedCoordinateSequence.Double(new double[] { x1, y1, x2, y2 }, 2), gf);
+    }
+
+    protected static Polygon poly(double[] arr) {
+        LinearRing r1 = gf.createLinearRing(new PackedCoordinateSequence.Double(arr, 2));
+        return gf.createPolygon(r1, new LinearRing[] {});
+    }
+
+    protected static double[] bbox(double x1, double y1, double x2, double y2) {
+        return new double[] { x1, y1, x1, y2, x2, y2, x2, y1, x1, y1 };
+    }
+
+    public void compare(CloseableIteration<Statement, ?> actual, Geometry... expected) throws Exception {
+        Set<Statement> expectedSet = Sets.newHashSet();
+        for (Geometry geo : expected) {
+            expectedSet.add(statement(geo));
+        }
+
+        Assert.assertEquals(expectedSet, getSet(actual));
+    }
+
+    protected static <X> Set<X> getSet(CloseableIteration<X, ?> iter) throws Exception {
+        Set<X> set = new HashSet<X>();
+        while (iter.hasNext()) {
+            set.add(iter.next());
+        }
+        return set;
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.google.common.collect.Sets;
+
+/**
+ * The landscape of {@link GeoIndexerSfFixture}, queried with {@link ConfigUtils#GEO_QUERY_REFINE} enabled. The spatial functions are
+ * evaluated exactly on the client, so every query returns the DE-9IM result.
+ */
+public class GeoIndexerSfRefineTest extends GeoIndexerSfFixture {
+    private static GeoIndexer g;
+
+    @BeforeClass
+    public static void before() throws Exception {
+        g = createIndexer("triplestore_geospacial_refine", true);
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        compare(g.queryEquals(F), F);
+        compare(g.queryEquals(point(2, 2)), EMPTY_RESULTS);
+
+        compare(g.queryEquals(E), E);
+        compare(g.queryEquals(line(2, 2, 3, 3)), EMPTY_RESULTS);
+
+        compare(g.queryEquals(A), A);
+        compare(g.queryEquals(poly(bbox(1, 1, 4, 5))), EMPTY_RESULTS);
+    }
+
+    @Test
+    public void testDisjoint() throws Exception {
+        compare(g.queryDisjoint(F), B, C, D, E);
+        compare(g.queryDisjoint(E), B, C, D, F);
+        compare(g.queryDisjoint(A), EMPTY_RESULTS);
+        compare(g.queryDisjoint(B), C, D, F, E);
+    }
+
+    @Test
+    public void testIntersects() throws Exception {
+        compare(g.queryIntersects(F), A, F);
+        compare(g.queryIntersects(E), A, E);
+        compare(g.queryIntersects(A), A, B, C, D, F, E);
+    }
+
+    @Test
+    public void testTouches() throws Exception {
+        compare(g.queryTouches(F), EMPTY_RESULTS);
+        compare(g.queryTouches(E), EMPTY_RESULTS);
+        compare(g.queryTouches(A), C);
+    }
+
+    @Test
+    public void testCrosses() throws Exception {
+        compare(g.queryCrosses(F), EMPTY_RESULTS);
+        compare(g.queryCrosses(E), A);
+        compare(g.queryCrosses(A), E);
+    }
+
+    @Test
+    public void testWithin() throws Exception {
+        compare(g.queryWithin(F), F);
+        compare(g.queryWithin(E), E);
+        compare(g.queryWithin(A), A, B, F);
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        compare(g.queryContains(F), A, F);
+        compare(g.queryContains(E), E);
+        compare(g.queryContains(A), A);
+        compare(g.queryContains(B), A, B);
+    }
+
+    @Test
+    public void testOverlaps() throws Exception {
+        compare(g.queryOverlaps(F), EMPTY_RESULTS);
+        compare(g.queryOverlaps(E), EMPTY_RESULTS);
+        compare(g.queryOverlaps(A), D);
+    }
+
+    @Test
+    public void testCountAndExists() throws Exception {
+        Assert.assertEquals(3, g.count(GeoConstants.GEO_SF_WITHIN, A, null));
+        Assert.assertEquals(1, g.count(GeoConstants.GEO_SF_OVERLAPS, A, null));
+        Assert.assertTrue(g.exists(GeoConstants.GEO_SF_TOUCHES, A, null));
+        Assert.assertFalse(g.exists(GeoConstants.GEO_SF_TOUCHES, F, null));
+    }
+
+    @Test
+    public void testWithinPaged() throws Exception {
+        PagedIteration<Statement, QueryEvaluationException> page = g.queryWithin(A, 2, null);
+        Set<Statement> actual = getSet(page);
+        Assert.assertEquals(2, actual.size());
+        String token = page.getResumeToken();
+        Assert.assertNotNull(token);
+
+        page = g.queryWithin(A, 2, token);
+        actual.addAll(getSet(page));
+        Assert.assertNull(page.getResumeToken());
+
+        Assert.assertEquals(Sets.newHashSet(statement(A), statement(B), statement(F)), actual);
+    }
+
+    @Test
+    public void testExplainRefine() throws Exception {
+        GeoQueryExplanation plan = g.explain(GeoConstants.GEO_SF_INTERSECTS, A, null, true);
+        Assert.assertEquals(1, plan.getClientFilters().size());
+        Assert.assertEquals(g.count(GeoConstants.GEO_SF_INTERSECTS, A, null), plan.getResults());
+    }
+}
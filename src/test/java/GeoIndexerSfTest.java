@@ -1,131 +1,31 @@
 import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.CloseableIteratorIteration;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.hadoop.conf.Configuration;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
-import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
-import org.openrdf.model.URI;
-import org.openrdf.model.Value;
-import org.openrdf.model.ValueFactory;
-import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
 
 import com.google.common.collect.Sets;
-import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.LinearRing;
-import com.vividsolutions.jts.geom.Point;
-import com.vividsolutions.jts.geom.Polygon;
-import com.vividsolutions.jts.geom.PrecisionModel;
-import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
-
-public class GeoIndexerSfTest {
-    private static Configuration conf;
-    private static GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
-    private static GeoIndexer g;
 
-    // Here is the landscape:
-    /**
-     * <pre>
-     *   +---+---+---+---+---+---+---+
-     *   |        F          |       |
-     *   +  A    +           +   C   +
-     *   |                   |       |
-     *   +---+---+    E      +---+---+
-     *   |       |   /       |
-     *   +   B   +  /+---+---+
-     *   |       | / |       |
-     *   +---+---+/--+---+---+
-     *           /   |     D |
-     *          /    +---+---+
-     * </pre>
-     **/
-
-    private static final Polygon A = poly(bbox(0, 1, 4, 5));
-    private static final Polygon B = poly(bbox(0, 1, 2, 3));
-    private static final Polygon C = poly(bbox(4, 3, 6, 5));
-    private static final Polygon D = poly(bbox(3, 0, 5, 2));
-
-    private static final Point F = point(2, 4);
-
-    private static final LineString E = line(2, 0, 3, 3);
+public class GeoIndexerSfTest extends GeoIndexerSfFixture {
+    private static GeoIndexer g;
 
     @BeforeClass
     public static void before() throws Exception {
-        System.out.println(UUID.randomUUID().toString());
-        String tableName = "triplestore_geospacial";
-        conf = new Configuration();
-        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
-        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
-        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
-        conf.set(ConfigUtils.GEO_TABLENAME, tableName);
-        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
-
-        g = new GeoMesaGeoIndexer(conf);
-        g.storeStatement(statement(A));
-        g.storeStatement(statement(B));
-        g.storeStatement(statement(C));
-        g.storeStatement(statement(D));
-        g.storeStatement(statement(F));
-        g.storeStatement(statement(E));
-
-    }
-
-    private static Statement statement(Geometry geo) {
-        ValueFactory vf = new ValueFactoryImpl();
-        Resource subject = vf.createURI("uri:" + DigestUtils.md5Hex(geo.toString()));
-        URI predicate = GeoConstants.GEO_AS_WKT;
-        Value object = vf.createLiteral(geo.toString(), GeoConstants.XMLSCHEMA_OGC_WKT);
-        return new StatementImpl(subject, predicate, object);
-
-    }
-
-    private static Point point(double x, double y) {
-        return gf.createPoint(new Coordinate(x, y));
+        g = createIndexer("triplestore_geospacial", false);
     }
 
-    private static LineString line(double x1, double y1, double x2, double y2) {
-        return new LineString(new PackedCoordinateSequence.Double(new double[] { x1, y1, x2, y2 }, 2), gf);
-    }
-
-    private static Polygon poly(double[] arr) {
-        LinearRing r1 = gf.createLinearRing(new PackedCoordinateSequence.Double(arr, 2));
-        Polygon p1 = gf.createPolygon(r1, new LinearRing[] {});
-        return p1;
-    }
-
-    private static double[] bbox(double x1, double y1, double x2, double y2) {
-        return new double[] { x1, y1, x1, y2, x2, y2, x2, y1, x1, y1 };
-    }
-
-    public void compare(CloseableIteration<Statement, ?> actual, Geometry... expected) throws Exception {
-        Set<Statement> expectedSet = Sets.newHashSet();
-        for (Geometry geo : expected) {
-            expectedSet.add(statement(geo));
-        }
-
-        Assert.assertEquals(expectedSet, getSet(actual));
-    }
-
-    private static <X> Set<X> getSet(CloseableIteration<X, ?> iter) throws Exception {
-        Set<X> set = new HashSet<X>();
-        while (iter.hasNext()) {
-            set.add(iter.next());
-        }
-        return set;
-    }
-
-    private static Geometry[] EMPTY_RESULTS = {};
-
     @Test
     public void testEquals() throws Exception {
         // point
@@ -174,6 +74,108 @@ public class GeoIndexerSfTest {
         compare(g.queryIntersects(A), A, B, C, D, F, E);
     }
 
+    @Test
+    public void testIntersectsPaged() throws Exception {
+        Set<Statement> actual = new HashSet<Statement>();
+
+        PagedIteration<Statement, QueryEvaluationException> page = g.queryIntersects(A, 4, null);
+        Set<Statement> firstPage = getSet(page);
+        Assert.assertEquals(4, firstPage.size());
+        String token = page.getResumeToken();
+        Assert.assertNotNull(token);
+        actual.addAll(firstPage);
+
+        page = g.queryIntersects(A, 4, token);
+        Set<Statement> secondPage = getSet(page);
+        Assert.assertEquals(2, secondPage.size());
+        Assert.assertNull(page.getResumeToken());
+        actual.addAll(secondPage);
+
+        compare(iteration(actual), A, B, C, D, F, E);
+    }
+
+    @Test
+    public void testCloseUnread() throws Exception {
+        GeoIndexerMetrics metrics = ((GeoMesaGeoIndexer) g).getMetrics();
+        String scanNanos = GeoIndexerMetrics.queryMetric(GeoConstants.GEO_SF_INTERSECTS.getLocalName(), "scanNanos");
+        GeoIndexerMetrics.Histogram scans = metrics.getHistogram(scanNanos);
+        long before = scans == null ? 0 : scans.getCount();
+
+        // a stale token is only checked when the page is read, so closing the page first does not fail
+        g.queryIntersects(A, 4, "999:stale").close();
+
+        scans = metrics.getHistogram(scanNanos);
+        Assert.assertEquals(before + 1, scans.getCount());
+    }
+
+    private static CloseableIteration<Statement, QueryEvaluationException> iteration(Set<Statement> statements) {
+        return new CloseableIteratorIteration<Statement, QueryEvaluationException>(statements.iterator());
+    }
+
+    @Test
+    public void testIntersectsWithConstraints() throws Exception {
+        StatementContraints subjectB = new StatementContraints().setSubject(statement(B).getSubject());
+        compare(g.queryIntersects(A, subjectB), B);
+
+        StatementContraints asWkt = new StatementContraints().setPredicates(Collections.singleton(GeoConstants.GEO_AS_WKT));
+        compare(g.queryIntersects(A, asWkt), A, B, C, D, F, E);
+
+        StatementContraints otherPredicate = new StatementContraints().setPredicates(Collections.singleton(GeoConstants.GEO_SF_EQUALS));
+        compare(g.queryIntersects(A, otherPredicate), EMPTY_RESULTS);
+
+        StatementContraints otherContext = new StatementContraints().setContext(new ValueFactoryImpl().createURI("uri:context"));
+        compare(g.queryIntersects(A, otherContext), EMPTY_RESULTS);
+    }
+
+    @Test
+    public void testBatchIntersects() throws Exception {
+        CloseableIteration<GeoBatchMatch, QueryEvaluationException> matches;
+        matches = g.queryBatch(GeoConstants.GEO_SF_INTERSECTS, Arrays.<Geometry> asList(F, E, B), null);
+
+        Map<Statement, Set<Integer>> actual = new HashMap<Statement, Set<Integer>>();
+        while (matches.hasNext()) {
+            GeoBatchMatch match = matches.next();
+            Assert.assertNull("statement returned twice", actual.put(match.getStatement(), match.getQueryIndexes()));
+        }
+
+        Map<Statement, Set<Integer>> expected = new HashMap<Statement, Set<Integer>>();
+        expected.put(statement(A), Sets.newHashSet(0, 1, 2));
+        expected.put(statement(F), Sets.newHashSet(0));
+        expected.put(statement(E), Sets.newHashSet(1));
+        expected.put(statement(B), Sets.newHashSet(2));
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testCountAndExists() throws Exception {
+        Assert.assertEquals(6, g.count(GeoConstants.GEO_SF_INTERSECTS, A, null));
+        Assert.assertTrue(g.exists(GeoConstants.GEO_SF_INTERSECTS, A, null));
+
+        StatementContraints subjectB = new StatementContraints().setSubject(statement(B).getSubject());
+        Assert.assertEquals(1, g.count(GeoConstants.GEO_SF_INTERSECTS, A, subjectB));
+
+        Assert.assertEquals(0, g.count(GeoConstants.GEO_SF_EQUALS, point(2, 2), null));
+        Assert.assertFalse(g.exists(GeoConstants.GEO_SF_EQUALS, point(2, 2), null));
+    }
+
+    @Test
+    public void testNearest() throws Exception {
+        CloseableIteration<Statement, QueryEvaluationException> nearest = g.queryNearest(point(2, 4.5), 2, null);
+        Assert.assertEquals(statement(A), nearest.next());
+        Assert.assertEquals(statement(F), nearest.next());
+        Assert.assertFalse(nearest.hasNext());
+
+        compare(g.queryNearest(point(2, 4.5), 10, null), A, B, C, D, F, E);
+        compare(g.queryNearest(point(2, 4.5), Integer.MAX_VALUE, null), A, B, C, D, F, E);
+    }
+
+    @Test
+    public void testDWithin() throws Exception {
+        // F is about 55km away, B 166km, E 200km and C 222km
+        compare(g.queryDWithin(point(2, 4.5), 60000, null), A, F);
+        compare(g.queryDWithin(point(2, 4.5), 210000, null), A, B, F, E);
+    }
+
     @Test
     public void testTouchesPoint() throws Exception {
         compare(g.queryTouches(F), EMPTY_RESULTS);
@@ -253,4 +255,26 @@ public class GeoIndexerSfTest {
         // compare(g.queryOverlaps(A), A, B, D, F, E);
         compare(g.queryOverlaps(A), A, B, C, D, F, E);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testExplain() throws Exception {
+        Geometry query = poly(bbox(0, 0, 2, 2));
+
+        // three row geohash characters are cells of 1.40625 degrees, so the query covers 2 x 2 cells in each of the shards 0 to 25
+        GeoQueryExplanation plan = g.explain(GeoConstants.GEO_SF_INTERSECTS, query, null, false);
+        Assert.assertFalse(plan.isAnalyzed());
+        Assert.assertEquals(26, plan.getShards());
+        Assert.assertEquals(26 * 4, plan.getRowRanges());
+        Assert.assertTrue(plan.getClientFilters().isEmpty());
+
+        GeoQueryExplanation analyzed = g.explain(GeoConstants.GEO_SF_INTERSECTS, query, null, true);
+        Assert.assertTrue(analyzed.isAnalyzed());
+        Assert.assertEquals(g.count(GeoConstants.GEO_SF_INTERSECTS, query, null), analyzed.getResults());
+        Assert.assertTrue(analyzed.getFeaturesScanned() >= analyzed.getResults());
+        Assert.assertTrue(analyzed.getFirstResultNanos() >= 0);
+
+        // disjoint scans every row
+        GeoQueryExplanation disjoint = g.explain(GeoConstants.GEO_SF_DISJOINT, query, null, false);
+        Assert.assertEquals(26L * 256 * 128, disjoint.getRowRanges());
+    }
+}
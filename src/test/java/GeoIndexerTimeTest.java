@@ -0,0 +1,141 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.datatype.DatatypeFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+public class GeoIndexerTimeTest {
+    private static final ValueFactory vf = new ValueFactoryImpl();
+    private static final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
+    private static final URI OBSERVED = vf.createURI("uri:observedAt");
+
+    private static final Geometry WORLD = gf.toGeometry(new Envelope(-10, 10, -10, 10));
+
+    private static Statement january;
+    private static Statement june;
+    private static Statement untimed;
+
+    private static GeoIndexer g;
+
+    @BeforeClass
+    public static void before() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.GEO_TABLENAME, "triplestore_geospacial_time");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.setBoolean(ConfigUtils.GEO_TIME_ENABLED, true);
+        conf.set(ConfigUtils.GEO_TIME_PREDICATES_LIST, OBSERVED.toString());
+
+        g = new GeoMesaGeoIndexer(conf);
+
+        january = geo("uri:january", 1, 1);
+        june = geo("uri:june", 2, 2);
+        untimed = geo("uri:untimed", 3, 3);
+
+        // the time of the january subject is in the same batch as its geometry
+        g.storeStatements(Arrays.asList(time("uri:january", "2014-01-15T12:00:00Z"), january));
+
+        // the time of the june subject is stored before its geometry
+        g.storeStatement(time("uri:june", "2014-06-15T12:00:00Z"));
+        g.storeStatement(june);
+
+        g.storeStatement(untimed);
+        g.flush();
+    }
+
+    private static Statement geo(String subject, double x, double y) {
+        Resource s = vf.createURI(subject);
+        return vf.createStatement(s, GeoConstants.GEO_AS_WKT,
+                vf.createLiteral(gf.createPoint(new Coordinate(x, y)).toString(), GeoConstants.XMLSCHEMA_OGC_WKT));
+    }
+
+    private static Statement time(String subject, String dateTime) throws Exception {
+        return vf.createStatement(vf.createURI(subject), OBSERVED,
+                vf.createLiteral(DatatypeFactory.newInstance().newXMLGregorianCalendar(dateTime)));
+    }
+
+    private static Date date(String dateTime) throws Exception {
+        return DatatypeFactory.newInstance().newXMLGregorianCalendar(dateTime).toGregorianCalendar().getTime();
+    }
+
+    private static Set<Statement> getSet(CloseableIteration<Statement, ?> iter) throws Exception {
+        Set<Statement> set = new HashSet<Statement>();
+        while (iter.hasNext()) {
+            set.add(iter.next());
+        }
+        return set;
+    }
+
+    @Test
+    public void testWithoutInterval() throws Exception {
+        Assert.assertEquals(Sets.newHashSet(january, june, untimed), getSet(g.queryIntersects(WORLD)));
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        StatementContraints q1 = new StatementContraints().setTimeInterval(date("2014-01-01T00:00:00Z"), date("2014-03-31T00:00:00Z"));
+        Assert.assertEquals(Sets.newHashSet(january), getSet(g.queryIntersects(WORLD, q1)));
+
+        StatementContraints year = new StatementContraints().setTimeInterval(date("2014-01-01T00:00:00Z"), date("2014-12-31T00:00:00Z"));
+        Assert.assertEquals(Sets.newHashSet(january, june), getSet(g.queryIntersects(WORLD, year)));
+    }
+
+    @Test
+    public void testParallelIngest() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.GEO_TABLENAME, "triplestore_geospacial_time_parallel");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.setBoolean(ConfigUtils.GEO_TIME_ENABLED, true);
+        conf.set(ConfigUtils.GEO_TIME_PREDICATES_LIST, OBSERVED.toString());
+        conf.setInt(ConfigUtils.GEO_INGEST_THREADS, 4);
+        conf.setInt(ConfigUtils.GEO_INGEST_BATCH_SIZE, 1);
+
+        GeoIndexer parallel = new GeoMesaGeoIndexer(conf);
+        try {
+            // every statement is converted in its own batch, and the geometry comes before its time
+            parallel.storeStatements(Arrays.asList(january, june, time("uri:june", "2014-06-15T12:00:00Z"),
+                    time("uri:january", "2014-01-15T12:00:00Z")));
+            parallel.flush();
+
+            StatementContraints year = new StatementContraints().setTimeInterval(date("2014-01-01T00:00:00Z"),
+                    date("2014-12-31T00:00:00Z"));
+            Assert.assertEquals(Sets.newHashSet(january, june), getSet(parallel.queryIntersects(WORLD, year)));
+        } finally {
+            parallel.close();
+        }
+    }
+
+    @Test
+    public void testOpenInterval() throws Exception {
+        StatementContraints afterMarch = new StatementContraints().setTimeInterval(date("2014-03-01T00:00:00Z"), null);
+        Assert.assertEquals(Sets.newHashSet(june), getSet(g.queryIntersects(WORLD, afterMarch)));
+
+        StatementContraints beforeMarch = new StatementContraints().setTimeInterval(null, date("2014-03-01T00:00:00Z"));
+        Assert.assertEquals(Sets.newHashSet(january), getSet(g.queryIntersects(WORLD, beforeMarch)));
+    }
+}
@@ -0,0 +1,359 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+/**
+ * Runs a mixed ingest and query load against a {@link GeoMesaGeoIndexer} and reports the ingest throughput and, for each query operation,
+ * the throughput and the p50, p99 and p999 latencies.
+ * <p>
+ * Ingest threads load a synthetic dataset in batches while query threads run a fixed number of queries each, so queries see a growing
+ * table. The workloads are:
+ * <ul>
+ * <li>uniform: points spread evenly over the world</li>
+ * <li>clustered: most points gathered around a few hundred centers</li>
+ * <li>landscape: the overlapping polygons, line and point of {@link GeoIndexerSfTest}, tiled over the world</li>
+ * </ul>
+ * Every statement and query is generated from its index with a fixed seed, so runs with the same options are repeatable. By default the
+ * indexer runs on a mock instance; pass the connection settings with <code>-D</code> and <code>-D .useMockInstance=false</code> to run
+ * against a cluster. Run with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=GeoLoadHarness -Dexec.args="-w clustered -n 1000000"</code>.
+ */
+public class GeoLoadHarness {
+    private static final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), GeometryDecoder.SRID);
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static final Envelope WORLD = new Envelope(-180, 180, -90, 90);
+
+    private static final String UNIFORM = "uniform";
+    private static final String CLUSTERED = "clustered";
+    private static final String LANDSCAPE = "landscape";
+
+    private static final int CLUSTERS = 500;
+
+    private static final List<String> OPERATIONS = Arrays.asList("intersects", "within", "contains", "dWithin", "nearest", "count");
+
+    private final String workload;
+    private final long statements;
+    private final int batchSize;
+    private final double querySize;
+
+    private GeoLoadHarness(String workload, long statements, int batchSize, double querySize) {
+        if (!UNIFORM.equals(workload) && !CLUSTERED.equals(workload) && !LANDSCAPE.equals(workload)) {
+            throw new IllegalArgumentException("Unknown workload: " + workload);
+        }
+        this.workload = workload;
+        this.statements = statements;
+        this.batchSize = batchSize;
+        this.querySize = querySize;
+    }
+
+    /**
+     * Latencies of one operation. Every latency is kept, so the percentiles are exact.
+     */
+    private static class LatencyRecorder {
+        private long[] latencies = new long[1024];
+        private int count = 0;
+        private long results = 0;
+
+        synchronized void record(long nanos, long resultCount) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            results += resultCount;
+        }
+
+        synchronized String report(String name, long elapsedNanos) {
+            if (count == 0) {
+                return String.format("  %-18s %10d", name, 0);
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return String.format("  %-18s %10d %10.1f %10.1f %10.2f %10.2f %10.2f %10.2f", name, count, count / (elapsedNanos / 1e9),
+                    (double) results / count, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6,
+                    percentile(sorted, 0.999) / 1e6, sorted[count - 1] / 1e6);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption(OptionBuilder.withLongOpt("workload").hasArg().withArgName("name")
+                .withDescription("uniform, clustered or landscape. Defaults to uniform").create("w"));
+        options.addOption(OptionBuilder.withLongOpt("statements").hasArg().withArgName("n")
+                .withDescription("the number of statements to ingest. Defaults to 100000").create("n"));
+        options.addOption(OptionBuilder.withLongOpt("batch").hasArg().withArgName("n")
+                .withDescription("the number of statements per storeStatements call. Defaults to 1000").create("b"));
+        options.addOption(OptionBuilder.withLongOpt("ingest-threads").hasArg().withArgName("n")
+                .withDescription("the number of ingest threads. Defaults to 2").create("i"));
+        options.addOption(OptionBuilder.withLongOpt("query-threads").hasArg().withArgName("n")
+                .withDescription("the number of query threads. Defaults to 4").create("q"));
+        options.addOption(OptionBuilder.withLongOpt("queries").hasArg().withArgName("n")
+                .withDescription("the number of queries per query thread. Defaults to 1000").create("r"));
+        options.addOption(OptionBuilder.withLongOpt("query-size").hasArg().withArgName("degrees")
+                .withDescription("the width of the query windows. Defaults to 1").create("s"));
+        options.addOption(OptionBuilder.withArgName("property=value").hasArgs(2).withValueSeparator()
+                .withDescription("set a configuration property").create("D"));
+        options.addOption(new Option("h", "help", false, "print this message"));
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = createOptions();
+        CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (org.apache.commons.cli.ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("GeoLoadHarness", options);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption("h")) {
+            new HelpFormatter().printHelp("GeoLoadHarness", options);
+            return;
+        }
+
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, "load_harness");
+        Properties properties = cmd.getOptionProperties("D");
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            conf.set(entry.getKey().toString(), entry.getValue().toString());
+        }
+
+        GeoLoadHarness harness = new GeoLoadHarness(cmd.getOptionValue("w", UNIFORM), Long.parseLong(cmd.getOptionValue("n", "100000")),
+                Integer.parseInt(cmd.getOptionValue("b", "1000")), Double.parseDouble(cmd.getOptionValue("s", "1")));
+        harness.run(conf, Integer.parseInt(cmd.getOptionValue("i", "2")), Integer.parseInt(cmd.getOptionValue("q", "4")),
+                Integer.parseInt(cmd.getOptionValue("r", "1000")));
+    }
+
+    private void run(Configuration conf, int ingestThreads, int queryThreads, final int queriesPerThread) throws Exception {
+        final GeoMesaGeoIndexer indexer = new GeoMesaGeoIndexer(conf);
+        final AtomicLong nextBatch = new AtomicLong();
+        final LatencyRecorder ingest = new LatencyRecorder();
+        final Map<String, LatencyRecorder> recorders = new LinkedHashMap<String, LatencyRecorder>();
+        for (String operation : OPERATIONS) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+
+        System.out.println(String.format("%s workload, %d statements in batches of %d, %d ingest threads, %d query threads x %d queries",
+                workload, statements, batchSize, ingestThreads, queryThreads, queriesPerThread));
+
+        ExecutorService executor = Executors.newFixedThreadPool(ingestThreads + queryThreads);
+        List<Future<Void>> ingestFutures = new ArrayList<Future<Void>>();
+        List<Future<Void>> queryFutures = new ArrayList<Future<Void>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < ingestThreads; t++) {
+            ingestFutures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    long batch;
+                    while ((batch = nextBatch.getAndIncrement()) * batchSize < statements) {
+                        List<Statement> statementBatch = createBatch(batch);
+                        long batchStart = System.nanoTime();
+                        indexer.storeStatements(statementBatch);
+                        ingest.record(System.nanoTime() - batchStart, statementBatch.size());
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (int t = 0; t < queryThreads; t++) {
+            final int thread = t;
+            queryFutures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < queriesPerThread; i++) {
+                        String operation = OPERATIONS.get(i % OPERATIONS.size());
+                        long queryStart = System.nanoTime();
+                        long results = runQuery(indexer, operation, random);
+                        recorders.get(operation).record(System.nanoTime() - queryStart, results);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : ingestFutures) {
+            future.get();
+        }
+        indexer.flush();
+        long ingestNanos = System.nanoTime() - start;
+        for (Future<Void> future : queryFutures) {
+            future.get();
+        }
+        long queryNanos = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        indexer.close();
+
+        System.out.println(String.format("ingest: %d statements in %.1f s, %.0f statements/s, %d rejected", statements, ingestNanos / 1e9,
+                statements / (ingestNanos / 1e9), indexer.getRejectedStatementCount()));
+        System.out.println(String.format("  %-18s %10s %10s %10s %10s %10s %10s %10s", "operation", "count", "ops/s", "results",
+                "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        System.out.println(ingest.report("storeStatements", ingestNanos));
+        for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+            System.out.println(entry.getValue().report(entry.getKey(), queryNanos));
+        }
+    }
+
+    private long runQuery(GeoIndexer indexer, String operation, Random random) throws Exception {
+        Envelope window = randomWindow(random);
+        Geometry query = gf.toGeometry(window);
+        Point center = gf.createPoint(window.centre());
+        if ("intersects".equals(operation)) {
+            return drain(indexer.queryIntersects(query));
+        } else if ("within".equals(operation)) {
+            return drain(indexer.queryWithin(query));
+        } else if ("contains".equals(operation)) {
+            return drain(indexer.queryContains(center));
+        } else if ("dWithin".equals(operation)) {
+            return drain(indexer.queryDWithin(center, querySize * 50000, null));
+        } else if ("nearest".equals(operation)) {
+            return drain(indexer.queryNearest(center, 10, null));
+        } else if ("count".equals(operation)) {
+            return indexer.count(GeoConstants.GEO_SF_INTERSECTS, query, null);
+        }
+        throw new IllegalArgumentException("Unknown operation: " + operation);
+    }
+
+    private static long drain(CloseableIteration<Statement, QueryEvaluationException> results) throws QueryEvaluationException {
+        long count = 0;
+        try {
+            while (results.hasNext()) {
+                results.next();
+                count++;
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    /**
+     * A query window over the data: anywhere for the uniform and landscape workloads, near a cluster center for the clustered one.
+     */
+    private Envelope randomWindow(Random random) {
+        Coordinate c;
+        if (CLUSTERED.equals(workload)) {
+            Coordinate center = clusterCenter(random.nextInt(CLUSTERS));
+            c = new Coordinate(center.x + random.nextGaussian(), center.y + random.nextGaussian());
+        } else {
+            c = randomCoordinate(random);
+        }
+        double half = querySize / 2;
+        return new Envelope(Math.max(-180, c.x - half), Math.min(180, c.x + half), Math.max(-90, c.y - half), Math.min(90, c.y + half));
+    }
+
+    private List<Statement> createBatch(long batch) {
+        List<Statement> statementBatch = new ArrayList<Statement>(batchSize);
+        long end = Math.min(statements, (batch + 1) * batchSize);
+        for (long i = batch * batchSize; i < end; i++) {
+            Geometry geometry = createGeometry(i);
+            statementBatch.add(vf.createStatement(vf.createURI("uri:load/" + i), GeoConstants.GEO_AS_WKT,
+                    vf.createLiteral(geometry.toString(), GeoConstants.XMLSCHEMA_OGC_WKT)));
+        }
+        return statementBatch;
+    }
+
+    private Geometry createGeometry(long i) {
+        Random random = new Random(i);
+        if (UNIFORM.equals(workload)) {
+            return gf.createPoint(randomCoordinate(random));
+        } else if (CLUSTERED.equals(workload)) {
+            Coordinate center = clusterCenter(random.nextInt(CLUSTERS));
+            return gf.createPoint(new Coordinate(clamp(center.x + random.nextGaussian() * 0.5, -180, 180), clamp(center.y
+                    + random.nextGaussian() * 0.5, -90, 90)));
+        }
+        return createLandscapeGeometry(i);
+    }
+
+    /**
+     * Shape i % 6 of cell i / 6. Each cell holds a scaled copy of the A to F landscape of {@link GeoIndexerSfTest}, which spans 6 by 5 units,
+     * and the cells are laid out on a square grid over the world.
+     */
+    private Geometry createLandscapeGeometry(long i) {
+        long cells = Math.max(1, (statements + 5) / 6);
+        long side = (long) Math.ceil(Math.sqrt(cells));
+        long cell = i / 6;
+        double cellWidth = 360.0 / side;
+        double cellHeight = 180.0 / side;
+        double x0 = -180 + (cell % side) * cellWidth;
+        double y0 = -90 + (cell / side) * cellHeight;
+        // leave a margin so neighboring cells do not touch
+        double sx = cellWidth * 0.9 / 6;
+        double sy = cellHeight * 0.9 / 5;
+
+        switch ((int) (i % 6)) {
+        case 0:
+            return box(x0, y0, sx, sy, 0, 1, 4, 5);
+        case 1:
+            return box(x0, y0, sx, sy, 0, 1, 2, 3);
+        case 2:
+            return box(x0, y0, sx, sy, 4, 3, 6, 5);
+        case 3:
+            return box(x0, y0, sx, sy, 3, 0, 5, 2);
+        case 4:
+            return gf.createLineString(new Coordinate[] { new Coordinate(x0 + 2 * sx, y0), new Coordinate(x0 + 3 * sx, y0 + 3 * sy) });
+        default:
+            return gf.createPoint(new Coordinate(x0 + 2 * sx, y0 + 4 * sy));
+        }
+    }
+
+    private static Geometry box(double x0, double y0, double sx, double sy, double x1, double y1, double x2, double y2) {
+        return gf.toGeometry(new Envelope(x0 + x1 * sx, x0 + x2 * sx, y0 + y1 * sy, y0 + y2 * sy));
+    }
+
+    private static Coordinate clusterCenter(int cluster) {
+        return randomCoordinate(new Random(-1 - cluster));
+    }
+
+    private static Coordinate randomCoordinate(Random random) {
+        return new Coordinate(WORLD.getMinX() + random.nextDouble() * WORLD.getWidth(), WORLD.getMinY() + random.nextDouble()
+                * WORLD.getHeight());
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
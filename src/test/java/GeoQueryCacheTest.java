@@ -0,0 +1,129 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class GeoQueryCacheTest {
+    private static final GeometryFactory gf = GeometryDecoder.GEOMETRY_FACTORY;
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static Geometry box(double x1, double y1, double x2, double y2) {
+        return gf.toGeometry(new Envelope(x1, x2, y1, y2));
+    }
+
+    private static List<Statement> results(String subject) {
+        Statement statement = new StatementImpl(vf.createURI(subject), GeoConstants.GEO_AS_WKT, vf.createLiteral("POINT (0 0)"));
+        return Collections.singletonList(statement);
+    }
+
+    private static void consume(GeoQueryCache cache, GeoQueryCache.Key key, List<Statement> statements) throws Exception {
+        PagedIteration<Statement, QueryEvaluationException> iteration = cache.cache(key, new ListIteration(statements));
+        while (iteration.hasNext()) {
+            iteration.next();
+        }
+    }
+
+    private static SimpleFeature feature(Geometry geometry) throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("test", "geom:Geometry:srid=4326");
+        SimpleFeature feature = SimpleFeatureBuilder.build(type, new Object[] {}, "id");
+        feature.setDefaultGeometry(geometry);
+        return feature;
+    }
+
+    @Test
+    public void testHitAndNormalizedKey() throws Exception {
+        GeoQueryCache cache = new GeoQueryCache(1024 * 1024, 100, 60000);
+        GeoQueryCache.Key key = new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, box(0, 0, 1, 1), null);
+        Assert.assertNull(cache.get(key));
+
+        consume(cache, key, results("uri:a"));
+
+        // the same polygon with its ring starting at a different vertex
+        Geometry rotated = new com.vividsolutions.jts.io.WKTReader(gf).read("POLYGON ((1 1, 1 0, 0 0, 0 1, 1 1))");
+        PagedIteration<Statement, QueryEvaluationException> hit = cache.get(new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, rotated,
+                new StatementContraints()));
+        Assert.assertNotNull(hit);
+        Assert.assertEquals(results("uri:a").get(0), hit.next());
+
+        Assert.assertNull(cache.get(new GeoQueryCache.Key(GeoConstants.GEO_SF_WITHIN, box(0, 0, 1, 1), null)));
+        Assert.assertNull(cache.get(new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, box(0, 0, 1, 1), new StatementContraints()
+                .setSubject(vf.createURI("uri:a")))));
+    }
+
+    @Test
+    public void testWriteInvalidatesIntersectingQueries() throws Exception {
+        GeoQueryCache cache = new GeoQueryCache(1024 * 1024, 100, 60000);
+        GeoQueryCache.Key near = new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, box(0, 0, 1, 1), null);
+        GeoQueryCache.Key far = new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, box(10, 10, 11, 11), null);
+        GeoQueryCache.Key disjoint = new GeoQueryCache.Key(GeoConstants.GEO_SF_DISJOINT, box(10, 10, 11, 11), null);
+        consume(cache, near, results("uri:near"));
+        consume(cache, far, results("uri:far"));
+        consume(cache, disjoint, results("uri:disjoint"));
+
+        cache.featuresWritten(Collections.singletonList(feature(gf.createPoint(new Coordinate(0.5, 0.5)))));
+
+        Assert.assertNull(cache.get(near));
+        Assert.assertNotNull(cache.get(far));
+        Assert.assertNull(cache.get(disjoint));
+    }
+
+    @Test
+    public void testLargeAndPartialResultsAreNotCached() throws Exception {
+        GeoQueryCache cache = new GeoQueryCache(1024 * 1024, 0, 60000);
+        GeoQueryCache.Key key = new GeoQueryCache.Key(GeoConstants.GEO_SF_INTERSECTS, box(0, 0, 1, 1), null);
+        consume(cache, key, results("uri:a"));
+        Assert.assertNull(cache.get(key));
+
+        cache = new GeoQueryCache(1024 * 1024, 100, 60000);
+        PagedIteration<Statement, QueryEvaluationException> iteration = cache.cache(key, new ListIteration(results("uri:a")));
+        iteration.close();
+        Assert.assertNull(cache.get(key));
+    }
+
+    private static class ListIteration implements PagedIteration<Statement, QueryEvaluationException> {
+        private final Iterator<Statement> iterator;
+
+        ListIteration(List<Statement> statements) {
+            iterator = statements.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Statement next() {
+            return iterator.next();
+        }
+
+        @Override
+        public String getResumeToken() {
+            return null;
+        }
+
+        @Override
+        public void remove() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.collect.Sets;
+
+public class GeoTableSplitterTest {
+
+    @Test
+    public void testShardSplits() throws Exception {
+        SortedSet<Text> splits = new GeoTableSplitter("RDF", 25, 0).getSplits();
+        // a shard setting of 25 gives shards 0 to 25
+        Assert.assertEquals(25, splits.size());
+        Assert.assertEquals(new Text("01"), splits.first());
+        Assert.assertEquals(new Text("25"), splits.last());
+    }
+
+    @Test
+    public void testGeohashSplits() throws Exception {
+        SortedSet<Text> splits = new GeoTableSplitter("RDF", 25, 1).getSplits();
+        Assert.assertEquals(25 + 26 * 32, splits.size());
+        Assert.assertTrue(splits.contains(new Text("00~RDF~0")));
+        Assert.assertTrue(splits.contains(new Text("07~RDF~d")));
+        Assert.assertEquals(new Text("25~RDF~z"), splits.last());
+
+        Assert.assertEquals(10 + 11 * 32 * 32, new GeoTableSplitter("RDF", 10, 2).getSplits().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyGeohashChars() throws Exception {
+        new GeoTableSplitter("RDF", 25, 3);
+    }
+
+    @Test
+    public void testSplitTable() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.setInt(ConfigUtils.GEO_NUM_PARTITIONS, 4);
+        conf.setInt(ConfigUtils.GEO_SPLIT_GEOHASH_CHARS, 1);
+
+        Connector connector = ConfigUtils.getConnector(conf);
+        connector.tableOperations().create("geo_split_test");
+
+        GeoTableSplitter splitter = GeoTableSplitter.fromConfiguration("RDF", conf);
+        Assert.assertEquals(4 + 5 * 32, splitter.split(connector, "geo_split_test"));
+        Assert.assertEquals(4 + 5 * 32, connector.tableOperations().listSplits("geo_split_test").size());
+
+        // splitting again only adds missing splits
+        Assert.assertEquals(0, splitter.split(connector, "geo_split_test"));
+    }
+
+    @Test
+    public void testHighestShard() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, "geo_split_highest_shard");
+        conf.setInt(ConfigUtils.GEO_NUM_PARTITIONS, 3);
+        conf.setBoolean(ConfigUtils.GEO_PRESPLIT, true);
+        conf.setInt(ConfigUtils.GEO_SPLIT_GEOHASH_CHARS, 1);
+
+        ValueFactory vf = new ValueFactoryImpl();
+        List<Statement> statements = new ArrayList<Statement>();
+        for (int i = 0; i < 200; i++) {
+            statements.add(vf.createStatement(vf.createURI("uri:feature" + i), GeoConstants.GEO_AS_WKT,
+                    vf.createLiteral("POINT(" + (i % 20) + " " + (i / 20) + ")", GeoConstants.XMLSCHEMA_OGC_WKT)));
+        }
+        GeoIndexer indexer = new GeoMesaGeoIndexer(conf);
+        try {
+            indexer.storeStatements(statements);
+            indexer.flush();
+        } finally {
+            indexer.close();
+        }
+
+        // collect the shard of every index row, and check that each one starts at a split of its own
+        Connector connector = ConfigUtils.getConnector(conf);
+        Set<String> shards = new TreeSet<String>();
+        for (String table : connector.tableOperations().list()) {
+            if (!table.startsWith("geo_split_highest_shard")) {
+                continue;
+            }
+            Collection<Text> splits = connector.tableOperations().listSplits(table);
+            for (Map.Entry<Key, Value> entry : connector.createScanner(table, ConfigUtils.getAuthorizations(conf))) {
+                String row = entry.getKey().getRow().toString();
+                if (row.matches("\\d+~RDF~.*")) {
+                    String shard = row.substring(0, row.indexOf('~'));
+                    shards.add(shard);
+                    Assert.assertTrue(row, splits.contains(new Text(shard + "~RDF~" + row.charAt(shard.length() + 5))));
+                }
+            }
+        }
+        Assert.assertEquals(Sets.newTreeSet(Arrays.asList("0", "1", "2", "3")), shards);
+    }
+}
@@ -0,0 +1,44 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class GeodesicDistanceTest {
+    private static final GeometryFactory gf = new GeometryFactory();
+
+    @Test
+    public void testPointDistance() throws Exception {
+        // one degree of longitude on the WGS84 equator
+        Assert.assertEquals(111319.49, GeodesicDistance.distance(new Coordinate(0, 0), new Coordinate(1, 0)), 0.01);
+    }
+
+    @Test
+    public void testGeometryDistance() throws Exception {
+        Geometry box = gf.toGeometry(new Envelope(0, 1, 0, 1));
+        Geometry inside = gf.createPoint(new Coordinate(0.5, 0.5));
+        Geometry east = gf.createPoint(new Coordinate(2, 0.5));
+
+        Assert.assertEquals(0, GeodesicDistance.distance(box, inside), 0);
+        Assert.assertEquals(GeodesicDistance.distance(new Coordinate(1, 0.5), new Coordinate(2, 0.5)), GeodesicDistance.distance(box, east),
+                0.01);
+    }
+
+    @Test
+    public void testExpandCoversDistance() throws Exception {
+        for (double lat : new double[] { 0, 45, 80 }) {
+            Coordinate center = new Coordinate(10, lat);
+            Envelope expanded = GeodesicDistance.expand(new Envelope(center), 100000);
+            Assert.assertTrue(GeodesicDistance.distance(center, new Coordinate(expanded.getMaxX(), lat)) >= 100000);
+            Assert.assertTrue(GeodesicDistance.distance(center, new Coordinate(10, expanded.getMaxY())) >= 100000);
+        }
+    }
+
+    @Test
+    public void testExpandToWorld() throws Exception {
+        Assert.assertTrue(GeodesicDistance.isWorld(GeodesicDistance.expand(new Envelope(new Coordinate(0, 0)), 3.0e7)));
+        Assert.assertFalse(GeodesicDistance.isWorld(GeodesicDistance.expand(new Envelope(new Coordinate(0, 0)), 1000)));
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class GeometryDecoderTest {
+
+    @Test
+    public void testPointFastPath() throws Exception {
+        Point p = GeometryDecoder.readPoint("POINT (2 4)");
+        Assert.assertNotNull(p);
+        Assert.assertEquals(2.0, p.getX(), 0.0);
+        Assert.assertEquals(4.0, p.getY(), 0.0);
+        Assert.assertEquals(GeometryDecoder.SRID, p.getSRID());
+
+        p = GeometryDecoder.readPoint("  point(-77.0365 38.8977e0)  ");
+        Assert.assertNotNull(p);
+        Assert.assertEquals(-77.0365, p.getX(), 0.0);
+        Assert.assertEquals(38.8977, p.getY(), 0.0);
+    }
+
+    @Test
+    public void testPointFallsBackToReader() throws Exception {
+        Assert.assertNull(GeometryDecoder.readPoint("POINT EMPTY"));
+        Assert.assertNull(GeometryDecoder.readPoint("POINT Z (1 2 3)"));
+        Assert.assertNull(GeometryDecoder.readPoint("POINT (1 2 3)"));
+        Assert.assertNull(GeometryDecoder.readPoint("POINT (1)"));
+        Assert.assertNull(GeometryDecoder.readPoint("POINT (1 2"));
+        Assert.assertNull(GeometryDecoder.readPoint("POINT (1 2) x"));
+        Assert.assertNull(GeometryDecoder.readPoint("LINESTRING (1 2, 3 4)"));
+
+        Geometry g = GeometryDecoder.read("POINT (1 2 3)");
+        Assert.assertTrue(g instanceof Point);
+        Assert.assertEquals(1.0, ((Point) g).getX(), 0.0);
+    }
+
+    @Test
+    public void testMatchesWKTReader() throws Exception {
+        String[] wkts = { "POINT (2 4)", "LINESTRING (2 0, 3 3)", "POLYGON ((0 1, 0 5, 4 5, 4 1, 0 1))",
+                "MULTIPOINT (1 1, 2 2)" };
+        WKTReader reader = new WKTReader();
+        for (String wkt : wkts) {
+            Geometry expected = reader.read(wkt);
+            Geometry actual = GeometryDecoder.read(wkt);
+            Assert.assertTrue(wkt, expected.equalsExact(actual));
+            Assert.assertEquals(GeometryDecoder.SRID, actual.getSRID());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import info.aduna.iteration.CloseableIteration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.util.GeometricShapeFactory;
+
+/**
+ * Loads the same synthetic dataset into a mock instance under several {@link GeoIndexSchema} layouts and reports, for a standard query
+ * mix, the number of scan ranges GeoMesa plans, the rows in the table, the results and the query latency.
+ * <p>
+ * The dataset mixes clustered points with polygons of varying size. Run with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=IndexLayoutHarness -Dexec.args="points polygons reps"</code>.
+ * The mock instance is single threaded and in memory, so compare layouts with each other rather than with a cluster.
+ */
+public class IndexLayoutHarness {
+    private static final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), GeometryDecoder.SRID);
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static final Envelope EXTENT = new Envelope(-80, -70, 35, 45);
+
+    private static class Layout {
+        final String name;
+        final GeoIndexSchema schema;
+
+        Layout(String name, int shards, int rowGeohashChars, int columnGeohashChars, String dateFormat) {
+            this.name = name;
+            this.schema = new GeoIndexSchema("RDF", shards, rowGeohashChars, columnGeohashChars, dateFormat);
+        }
+    }
+
+    private static final List<Layout> LAYOUTS = Arrays.asList( //
+            new Layout("default", 25, 3, 2, "yyyyMMdd"), //
+            new Layout("coarse-rows", 25, 2, 2, "yyyyMMdd"), //
+            new Layout("fine-rows", 25, 4, 3, "yyyyMMdd"), //
+            new Layout("few-shards", 4, 3, 2, "yyyyMMdd"), //
+            new Layout("no-date", 25, 3, 2, ""));
+
+    private static class NamedQuery {
+        final String name;
+        final Geometry geometry;
+
+        NamedQuery(String name, Geometry geometry) {
+            this.name = name;
+            this.geometry = geometry;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int points = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int polygons = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int reps = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<Statement> dataset = createDataset(points, polygons, new Random(42));
+        List<NamedQuery> queries = createQueries();
+
+        System.out.println(String.format("%d points, %d polygons, %d repetitions per query", points, polygons, reps));
+        for (Layout layout : LAYOUTS) {
+            run(layout, dataset, queries, reps);
+        }
+    }
+
+    private static void run(Layout layout, List<Statement> dataset, List<NamedQuery> queries, int reps) throws Exception {
+        String tableName = "harness_" + layout.name.replace('-', '_');
+        Configuration conf = new Configuration();
+        conf.setBoolean(ConfigUtils.USE_MOCK_INSTANCE, true);
+        conf.set(ConfigUtils.CLOUDBASE_USER, "SPEAR");
+        conf.set(ConfigUtils.CLOUDBASE_PASSWORD, "spear");
+        conf.set(ConfigUtils.CLOUDBASE_AUTHS, "U");
+        conf.set(ConfigUtils.GEO_TABLENAME, tableName);
+        conf.setInt(ConfigUtils.GEO_NUM_PARTITIONS, layout.schema.getShards());
+        conf.setInt(ConfigUtils.GEO_INDEX_ROW_GEOHASH_CHARS, layout.schema.getRowGeohashChars());
+        conf.setInt(ConfigUtils.GEO_INDEX_COLUMN_GEOHASH_CHARS, layout.schema.getColumnGeohashChars());
+        conf.set(ConfigUtils.GEO_INDEX_DATE_FORMAT, layout.schema.getDateFormat() == null ? "" : layout.schema.getDateFormat());
+
+        GeoMesaGeoIndexer indexer = new GeoMesaGeoIndexer(conf);
+        long start = System.nanoTime();
+        for (int i = 0; i < dataset.size(); i += 1000) {
+            indexer.storeStatements(dataset.subList(i, Math.min(dataset.size(), i + 1000)));
+        }
+        indexer.flush();
+        long loadMillis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println();
+        System.out.println(String.format("layout %s: %s", layout.name, layout.schema));
+        System.out.println(String.format("  load %d ms, %d rows in the table", loadMillis, countRows(conf, tableName)));
+        System.out.println(String.format("  %-16s %10s %10s %10s %10s", "query", "ranges", "results", "p50 ms", "max ms"));
+        for (NamedQuery query : queries) {
+            long[] latencies = new long[reps];
+            int results = 0;
+            for (int i = 0; i < reps; i++) {
+                long queryStart = System.nanoTime();
+                results = drain(indexer.queryIntersects(query.geometry));
+                latencies[i] = System.nanoTime() - queryStart;
+            }
+            Arrays.sort(latencies);
+            System.out.println(String.format("  %-16s %10d %10d %10.2f %10.2f", query.name,
+                    layout.schema.estimateRowRanges(query.geometry.getEnvelopeInternal()), results, latencies[reps / 2] / 1e6,
+                    latencies[reps - 1] / 1e6));
+        }
+        indexer.close();
+    }
+
+    private static int drain(CloseableIteration<Statement, QueryEvaluationException> results) throws QueryEvaluationException {
+        int count = 0;
+        try {
+            while (results.hasNext()) {
+                results.next();
+                count++;
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    private static long countRows(Configuration conf, String tableName) throws Exception {
+        Connector connector = ConfigUtils.getConnector(conf);
+        long rows = 0;
+        Text last = null;
+        Scanner scanner = connector.createScanner(tableName, new Authorizations());
+        for (Map.Entry<Key, Value> entry : scanner) {
+            Text row = entry.getKey().getRow();
+            if (!row.equals(last)) {
+                rows++;
+                last = row;
+            }
+        }
+        return rows;
+    }
+
+    private static List<Statement> createDataset(int points, int polygons, Random random) {
+        List<Statement> statements = new ArrayList<Statement>(points + polygons);
+
+        // most points are clustered around a few cities, the rest are spread over the extent
+        List<Coordinate> centers = new ArrayList<Coordinate>();
+        for (int i = 0; i < 5; i++) {
+            centers.add(randomCoordinate(EXTENT, random));
+        }
+        for (int i = 0; i < points; i++) {
+            Coordinate c;
+            if (random.nextDouble() < 0.8) {
+                Coordinate center = centers.get(random.nextInt(centers.size()));
+                c = new Coordinate(center.x + random.nextGaussian() * 0.1, center.y + random.nextGaussian() * 0.1);
+            } else {
+                c = randomCoordinate(EXTENT, random);
+            }
+            statements.add(statement("uri:point" + i, gf.createPoint(c)));
+        }
+
+        // polygons from a few hundred meters to tens of kilometers across
+        GeometricShapeFactory shapes = new GeometricShapeFactory(gf);
+        for (int i = 0; i < polygons; i++) {
+            shapes.setCentre(randomCoordinate(EXTENT, random));
+            shapes.setSize(0.005 + random.nextDouble() * random.nextDouble() * 0.5);
+            shapes.setNumPoints(8 + random.nextInt(56));
+            statements.add(statement("uri:polygon" + i, shapes.createCircle()));
+        }
+        Collections.shuffle(statements, random);
+        return statements;
+    }
+
+    private static List<NamedQuery> createQueries() {
+        Coordinate center = new Coordinate(EXTENT.centre().x, EXTENT.centre().y);
+        GeometricShapeFactory shapes = new GeometricShapeFactory(gf);
+        shapes.setCentre(center);
+        shapes.setSize(0.6);
+        shapes.setNumPoints(64);
+
+        return Arrays.asList( //
+                new NamedQuery("point", gf.createPoint(center)), //
+                new NamedQuery("box-0.05", box(center, 0.05)), //
+                new NamedQuery("box-0.5", box(center, 0.5)), //
+                new NamedQuery("box-3", box(center, 3)), //
+                new NamedQuery("circle-64", shapes.createCircle()));
+    }
+
+    private static Geometry box(Coordinate center, double size) {
+        return gf.toGeometry(new Envelope(center.x - size / 2, center.x + size / 2, center.y - size / 2, center.y + size / 2));
+    }
+
+    private static Coordinate randomCoordinate(Envelope extent, Random random) {
+        return new Coordinate(extent.getMinX() + random.nextDouble() * extent.getWidth(), extent.getMinY() + random.nextDouble()
+                * extent.getHeight());
+    }
+
+    private static Statement statement(String subject, Geometry geometry) {
+        return vf.createStatement(vf.createURI(subject), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral(geometry.toString(), GeoConstants.XMLSCHEMA_OGC_WKT));
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.base.Function;
+
+public class ParallelFeatureIngesterTest {
+    private static final ValueFactory vf = new ValueFactoryImpl();
+
+    private static final Function<Collection<Statement>, List<SimpleFeature>> FEATURE_BUILDER;
+    static {
+        FEATURE_BUILDER = new Function<Collection<Statement>, List<SimpleFeature>>() {
+            @Override
+            public List<SimpleFeature> apply(Collection<Statement> statements) {
+                List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+                for (Statement statement : statements) {
+                    features.add(RecordingFeatureStore.feature(statement.getSubject().stringValue()));
+                }
+                return features;
+            }
+        };
+    }
+
+    private static List<Statement> statements(int count) {
+        List<Statement> statements = new ArrayList<Statement>();
+        for (int i = 0; i < count; i++) {
+            statements.add(vf.createStatement(vf.createURI("uri:s" + i), GeoConstants.GEO_AS_WKT, vf.createLiteral("POINT (0 0)")));
+        }
+        return statements;
+    }
+
+    private static void assertAllWritten(RecordingFeatureStore store, int count) {
+        List<String> ids = store.getFeatureIds();
+        Assert.assertEquals(count, ids.size());
+        Assert.assertEquals(count, new HashSet<String>(ids).size());
+    }
+
+    @Test(timeout = 30000)
+    public void testFlushWaitsForPendingBatches() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 0, Long.MAX_VALUE, 0);
+        ParallelFeatureIngester ingester = new ParallelFeatureIngester(FEATURE_BUILDER, buffer, 4, 2, 10);
+
+        ingester.submit(statements(1000));
+        ingester.flush();
+        assertAllWritten(store, 1000);
+        ingester.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testWriterFailureIsRethrown() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 0, Long.MAX_VALUE, 0);
+        ParallelFeatureIngester ingester = new ParallelFeatureIngester(FEATURE_BUILDER, buffer, 2, 2, 10);
+        store.setFailure(new IOException("write failed"));
+
+        // from flush
+        ingester.submit(statements(20));
+        try {
+            ingester.flush();
+            Assert.fail("the failed write was not reported by flush");
+        } catch (IOException e) {
+            Assert.assertEquals("write failed", e.getMessage());
+        }
+
+        // from the next submit, once the writer has failed a single batch
+        ingester.submit(statements(10));
+        while (store.getAttempts() < 3) {
+            Thread.sleep(5);
+        }
+        IOException reported = null;
+        while (reported == null) {
+            try {
+                ingester.submit(Collections.<Statement> emptyList());
+                Thread.sleep(5);
+            } catch (IOException e) {
+                reported = e;
+            }
+        }
+        Assert.assertEquals("write failed", reported.getMessage());
+
+        // the pipeline still works once the store recovers
+        store.setFailure(null);
+        ingester.flush();
+        ingester.submit(statements(20));
+        ingester.flush();
+        assertAllWritten(store, 20);
+        ingester.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testSubmitAfterClose() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 0, Long.MAX_VALUE, 0);
+        ParallelFeatureIngester ingester = new ParallelFeatureIngester(FEATURE_BUILDER, buffer, 2, 2, 10);
+        ingester.submit(statements(10));
+        ingester.close();
+        assertAllWritten(store, 10);
+
+        try {
+            ingester.submit(statements(10));
+            Assert.fail("submitted statements to a closed ingester");
+        } catch (IOException e) {
+            // expected
+        }
+        // nothing was left pending
+        ingester.flush();
+        assertAllWritten(store, 10);
+    }
+
+    @Test(timeout = 30000)
+    public void testBackpressure() throws Exception {
+        RecordingFeatureStore store = new RecordingFeatureStore();
+        FeatureWriteBuffer buffer = new FeatureWriteBuffer(store.getStore(), 0, Long.MAX_VALUE, 0);
+        final ParallelFeatureIngester ingester = new ParallelFeatureIngester(FEATURE_BUILDER, buffer, 2, 1, 1);
+        CountDownLatch gate = store.block();
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ingester.submit(statements(50));
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        submitter.start();
+
+        // the writer is blocked, so the feature queue, the workers and their work queue fill up and the caller has to wait
+        submitter.join(500);
+        Assert.assertTrue(submitter.isAlive());
+        Assert.assertEquals(0, store.getAttempts());
+
+        gate.countDown();
+        submitter.join();
+        Assert.assertNull(error.get());
+        ingester.flush();
+        assertAllWritten(store, 50);
+        ingester.close();
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class QueryEnvelopeMergerTest {
+
+    @Test
+    public void testDisjointEnvelopesStaySeparate() throws Exception {
+        List<QueryEnvelopeMerger.Region> regions = QueryEnvelopeMerger.merge(Arrays.asList(new Envelope(0, 1, 0, 1), new Envelope(5, 6, 5,
+                6)));
+        Assert.assertEquals(2, regions.size());
+    }
+
+    @Test
+    public void testDuplicateEnvelopesAreMerged() throws Exception {
+        List<QueryEnvelopeMerger.Region> regions = QueryEnvelopeMerger.merge(Arrays.asList(new Envelope(0, 1, 0, 1), new Envelope(0, 1, 0,
+                1)));
+        Assert.assertEquals(1, regions.size());
+        Assert.assertEquals(new Envelope(0, 1, 0, 1), regions.get(0).getEnvelope());
+        Assert.assertEquals(Arrays.asList(0, 1), regions.get(0).getQueryIndexes());
+    }
+
+    @Test
+    public void testMergedRegionsAreMergedAgain() throws Exception {
+        // the first two envelopes do not intersect each other, but both intersect the wide region formed by the last two
+        List<QueryEnvelopeMerger.Region> regions = QueryEnvelopeMerger.merge(Arrays.asList(new Envelope(0, 1, 0, 1), new Envelope(0, 1, 4,
+                5), new Envelope(2, 3, 0, 5), new Envelope(0.5, 2.5, 2, 3)));
+        Assert.assertEquals(1, regions.size());
+        Assert.assertEquals(new Envelope(0, 3, 0, 5), regions.get(0).getEnvelope());
+        Assert.assertEquals(4, regions.get(0).getQueryIndexes().size());
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureStore;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.identity.FeatureId;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * A {@link FeatureStore} stub for the write path tests. It records every batch passed to <code>addFeatures</code>, can be made to fail or
+ * to block its writes, and rejects every other method.
+ */
+public class RecordingFeatureStore implements InvocationHandler {
+    private static final SimpleFeatureType TYPE;
+    static {
+        try {
+            TYPE = DataUtilities.createType("test", "geom:Point:srid=4326,name:String");
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final List<List<SimpleFeature>> batches = new ArrayList<List<SimpleFeature>>();
+    private int attempts = 0;
+    private IOException failure = null;
+    private volatile CountDownLatch gate = null;
+
+    /**
+     * @return a feature of the test type
+     */
+    public static SimpleFeature feature(String id) {
+        return SimpleFeatureBuilder.build(TYPE,
+                new Object[] { GeometryDecoder.GEOMETRY_FACTORY.createPoint(new Coordinate(0, 0)), "feature " + id }, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    public FeatureStore<SimpleFeatureType, SimpleFeature> getStore() {
+        return (FeatureStore<SimpleFeatureType, SimpleFeature>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { FeatureStore.class }, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("addFeatures".equals(method.getName())) {
+            @SuppressWarnings("unchecked")
+            FeatureCollection<SimpleFeatureType, SimpleFeature> collection = (FeatureCollection<SimpleFeatureType, SimpleFeature>) args[0];
+            addFeatures(collection);
+            return Collections.<FeatureId> emptyList();
+        } else if ("toString".equals(method.getName())) {
+            return "RecordingFeatureStore";
+        } else if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        } else if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        }
+        throw new UnsupportedOperationException(method.getName());
+    }
+
+    private void addFeatures(FeatureCollection<SimpleFeatureType, SimpleFeature> collection) throws IOException, InterruptedException {
+        CountDownLatch gate = this.gate;
+        if (gate != null) {
+            gate.await();
+        }
+        List<SimpleFeature> batch = new ArrayList<SimpleFeature>();
+        FeatureIterator<SimpleFeature> features = collection.features();
+        try {
+            while (features.hasNext()) {
+                batch.add(features.next());
+            }
+        } finally {
+            features.close();
+        }
+        synchronized (this) {
+            attempts++;
+            if (failure != null) {
+                throw failure;
+            }
+            batches.add(batch);
+        }
+    }
+
+    /**
+     * @param failure
+     *            thrown by every write until cleared with null
+     */
+    public synchronized void setFailure(IOException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Make writes wait until the returned latch is counted down.
+     */
+    public CountDownLatch block() {
+        CountDownLatch latch = new CountDownLatch(1);
+        gate = latch;
+        return latch;
+    }
+
+    /**
+     * @return the number of writes, including failed ones
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the successfully written batches
+     */
+    public synchronized List<List<SimpleFeature>> getBatches() {
+        return new ArrayList<List<SimpleFeature>>(batches);
+    }
+
+    /**
+     * @return the IDs of every successfully written feature
+     */
+    public synchronized List<String> getFeatureIds() {
+        List<String> ids = new ArrayList<String>();
+        for (List<SimpleFeature> batch : batches) {
+            for (SimpleFeature feature : batch) {
+                ids.add(feature.getID());
+            }
+        }
+        return ids;
+    }
+}
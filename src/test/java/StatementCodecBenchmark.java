@@ -0,0 +1,74 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrdf.model.Statement;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * The per-statement work of ingest that does not need a data store: serializing and parsing the statement, hashing it into a feature ID
+ * and parsing its Well-Known Text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class StatementCodecBenchmark {
+
+    @Param({ BenchmarkGeometries.MULTIPOINT, BenchmarkGeometries.LINESTRING, BenchmarkGeometries.POLYGON })
+    public String geometryType;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int vertices;
+
+    private Statement statement;
+    private String serialized;
+    private String wkt;
+
+    @Setup
+    public void setup() {
+        statement = BenchmarkGeometries.createStatement(geometryType, vertices);
+        serialized = StatementSerializer.writeStatement(statement);
+        wkt = statement.getObject().stringValue();
+    }
+
+    @Benchmark
+    public String writeStatement() {
+        return StatementSerializer.writeStatement(statement);
+    }
+
+    @Benchmark
+    public Statement readStatement() throws Exception {
+        return StatementSerializer.readStatement(serialized);
+    }
+
+    @Benchmark
+    public String md5Base64() {
+        return Md5Hash.md5Base64(serialized);
+    }
+
+    @Benchmark
+    public Geometry parseWkt() throws ParseException {
+        return GeometryDecoder.read(wkt);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StatementCodecBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Compares the legacy string based MD5 feature ID with the {@link StatementIdGenerator} hashes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementIdBenchmark {
+
+    @Param({ "POINT (-77.0365 38.8977)", "POLYGON ((0 1, 0 5, 4 5, 4 1, 0 1))" })
+    public String wkt;
+
+    private Statement statement;
+    private StatementIdGenerator md5;
+    private StatementIdGenerator murmur3;
+
+    @Setup
+    public void setup() {
+        ValueFactory vf = new ValueFactoryImpl();
+        statement = new StatementImpl(vf.createURI("http://example.com/feature/1234567890"), GeoConstants.GEO_AS_WKT,
+                vf.createLiteral(wkt, GeoConstants.XMLSCHEMA_OGC_WKT));
+        md5 = StatementIdGenerator.forName(StatementIdGenerator.MD5);
+        murmur3 = StatementIdGenerator.forName(StatementIdGenerator.MURMUR3_128);
+    }
+
+    @Benchmark
+    public String legacyMd5() {
+        return Md5Hash.md5Base64(StatementSerializer.writeStatement(statement));
+    }
+
+    @Benchmark
+    public String md5() {
+        return md5.createId(statement);
+    }
+
+    @Benchmark
+    public String murmur3() {
+        return murmur3.createId(statement);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StatementIdBenchmark.class.getSimpleName()).build()).run();
+    }
+}
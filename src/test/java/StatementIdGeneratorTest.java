@@ -0,0 +1,40 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class StatementIdGeneratorTest {
+    private static final ValueFactory VF = new ValueFactoryImpl();
+
+    @Test
+    public void testMd5MatchesLegacyIds() throws Exception {
+        StringBuilder longLabel = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longLabel.append("caf\u00e9 ");
+        }
+        Statement[] statements = {
+                new StatementImpl(VF.createURI("uri:s"), GeoConstants.GEO_AS_WKT, VF.createLiteral("POINT (2 4)",
+                        GeoConstants.XMLSCHEMA_OGC_WKT)),
+                new StatementImpl(VF.createBNode("b1"), VF.createURI("uri:p"), VF.createLiteral(longLabel.toString(), "fr")),
+                new ContextStatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createURI("uri:o"), VF.createURI("uri:c")) };
+
+        StatementIdGenerator md5 = StatementIdGenerator.forName(StatementIdGenerator.MD5);
+        for (Statement statement : statements) {
+            Assert.assertEquals(Md5Hash.md5Base64(StatementSerializer.writeStatement(statement)), md5.createId(statement));
+        }
+    }
+
+    @Test
+    public void testMurmur3() throws Exception {
+        StatementIdGenerator murmur = StatementIdGenerator.forName(StatementIdGenerator.MURMUR3_128);
+        Statement a = new StatementImpl(VF.createURI("uri:a"), VF.createURI("uri:p"), VF.createLiteral("x"));
+        Statement b = new StatementImpl(VF.createURI("uri:b"), VF.createURI("uri:p"), VF.createLiteral("x"));
+
+        Assert.assertEquals(22, murmur.createId(a).length());
+        Assert.assertEquals(murmur.createId(a), murmur.createId(a));
+        Assert.assertFalse(murmur.createId(a).equals(murmur.createId(b)));
+    }
+}
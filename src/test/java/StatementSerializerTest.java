@@ -0,0 +1,64 @@
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import com.google.common.base.Charsets;
+
+public class StatementSerializerTest {
+    private static final ValueFactory VF = new ValueFactoryImpl();
+
+    private static Statement[] statements() {
+        return new Statement[] {
+                new StatementImpl(VF.createURI("uri:s"), GeoConstants.GEO_AS_WKT, VF.createLiteral("POINT (2 4)",
+                        GeoConstants.XMLSCHEMA_OGC_WKT)),
+                new StatementImpl(VF.createBNode("b1"), VF.createURI("uri:p"), VF.createLiteral("caf\u00e9 \ud83c\udf0d", "fr")),
+                new StatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createLiteral("with \"quotes\"")),
+                new ContextStatementImpl(VF.createURI("uri:s"), VF.createURI("uri:p"), VF.createURI("uri:o"), VF.createURI("uri:c")) };
+    }
+
+    @Test
+    public void testStringRoundTrip() throws Exception {
+        for (Statement statement : statements()) {
+            String serialized = StatementSerializer.writeStatement(statement);
+            String expected = (statement.getContext() == null ? "" : statement.getContext().toString()) + "\u0000"
+                    + statement.getSubject() + "\u0000" + statement.getPredicate() + "\u0000" + statement.getObject();
+            Assert.assertEquals(expected, serialized);
+
+            Statement read = StatementSerializer.readStatement(serialized);
+            Assert.assertEquals(statement, read);
+            Assert.assertEquals(statement.getContext(), read.getContext());
+
+            char[] chars = ("xx" + serialized + "yy").toCharArray();
+            Assert.assertEquals(statement, StatementSerializer.readStatement(chars, 2, serialized.length()));
+        }
+    }
+
+    @Test
+    public void testByteBufferRoundTrip() throws Exception {
+        for (Statement statement : statements()) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            StatementSerializer.writeStatement(statement, buffer);
+            buffer.flip();
+
+            byte[] expected = StatementSerializer.writeStatement(statement).getBytes(Charsets.UTF_8);
+            Assert.assertEquals(ByteBuffer.wrap(expected), buffer);
+            Assert.assertEquals(statement, StatementSerializer.readStatement(buffer));
+        }
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testTooFewParts() throws Exception {
+        StatementSerializer.readStatement("\u0000uri:s\u0000uri:p");
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testTooManyParts() throws Exception {
+        StatementSerializer.readStatement("\u0000uri:s\u0000uri:p\u0000uri:o\u0000uri:x");
+    }
+}